@@ -0,0 +1,80 @@
+package de.dosmike.sponge.megamenus.benchmark;
+
+import de.dosmike.sponge.megamenus.api.MenuRenderer;
+import de.dosmike.sponge.megamenus.api.elements.IIcon;
+import de.dosmike.sponge.megamenus.api.elements.MIcon;
+import de.dosmike.sponge.megamenus.impl.BaseMenuImpl;
+import de.dosmike.sponge.megamenus.impl.SimulatedServer;
+import de.dosmike.sponge.megamenus.impl.util.SlotChange;
+import org.openjdk.jmh.annotations.*;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
+import org.spongepowered.api.item.inventory.property.SlotPos;
+import org.spongepowered.api.item.inventory.transaction.SlotTransaction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures handling clicks into a full inventory menu on the {@link SimulatedServer},
+ * from the click event passed to the inventory listener of the GuiRenderer and
+ * for turning slot transactions into {@link SlotChange}s alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ClickBenchmark {
+
+    @Param({"1", "3", "6"})
+    public int rows;
+
+    private MenuRenderer render;
+    private Player player;
+    private SlotPos[] positions;
+    private SlotTransaction[] transactions;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        SimulatedServer.install();
+        ItemStackSnapshot stone = SimulatedServer.item("minecraft:stone");
+        BaseMenuImpl menu = new BaseMenuImpl();
+        int slots = rows*9;
+        positions = new SlotPos[slots];
+        for (int i = 0; i < slots; i++) {
+            positions[i] = new SlotPos(i % 9, i / 9);
+            MIcon icon = new MIcon();
+            icon.setPosition(positions[i]);
+            icon.setIcon(IIcon.of(stone));
+            menu.add(1, icon);
+        }
+        player = SimulatedServer.player(0);
+        render = menu.createGuiRenderer(rows, false);
+        render.open(player);
+        //inventories are drawn in the tick after opening
+        SimulatedServer.tick();
+        //every other transaction takes the item or puts a different item
+        ItemStackSnapshot dirt = SimulatedServer.item("minecraft:dirt");
+        transactions = new SlotTransaction[slots];
+        for (int i = 0; i < slots; i++)
+            transactions[i] = SimulatedServer.transaction(player, positions[i], i % 2 == 0 ? SimulatedServer.empty() : dirt);
+    }
+
+    @TearDown
+    public void tearDown() {
+        render.closeAll();
+        SimulatedServer.tick();
+    }
+
+    /** performed for every slot transaction of a click event */
+    @Benchmark
+    public SlotChange slotChangeFrom() {
+        return SlotChange.from(transactions[next++ % transactions.length]);
+    }
+
+    /** a click picking up an icon, cancelled by the renderer */
+    @Benchmark
+    public boolean click() {
+        return SimulatedServer.click(player, positions[next++ % positions.length]);
+    }
+
+}
@@ -0,0 +1,65 @@
+package de.dosmike.sponge.megamenus.benchmark;
+
+import de.dosmike.sponge.megamenus.api.elements.MIcon;
+import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
+import de.dosmike.sponge.megamenus.impl.BaseMenuImpl;
+import de.dosmike.sponge.megamenus.impl.BoundMenuImpl;
+import de.dosmike.sponge.megamenus.impl.util.MenuUtil;
+import org.openjdk.jmh.annotations.*;
+import org.spongepowered.api.item.inventory.property.SlotPos;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up elements for a click and creating bound menus for menus
+ * of different sizes. Every page is filled completely with elements, leaving space
+ * for the pagination buttons if required.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MenuLookupBenchmark {
+
+    @Param({"1", "3", "6"})
+    public int rows;
+
+    @Param({"1", "10", "50"})
+    public int pages;
+
+    private BaseMenuImpl menu;
+    private SlotPos[] positions;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        menu = new BaseMenuImpl();
+        int slots = rows*9;
+        for (int page = 1; page <= pages; page++) {
+            for (int i = 0; i < slots; i++) {
+                int x = i % 9, y = i / 9;
+                if (pages > 1 && y == rows-1 && x >= 3 && x <= 5) continue; //pagination
+                MIcon icon = new MIcon();
+                icon.setPosition(new SlotPos(x, y));
+                menu.add(page, icon);
+            }
+        }
+        positions = new SlotPos[slots];
+        for (int i = 0; i < slots; i++)
+            positions[i] = new SlotPos(i % 9, i / 9);
+    }
+
+    /** the lookup performed for every click in a inventory menu */
+    @Benchmark
+    public Set<IElement> getAllElementsAt() {
+        int i = next++;
+        return MenuUtil.getAllElementsAt(menu, 1 + i % pages, positions[i % positions.length]);
+    }
+
+    /** performed every time a player opens a menu that is not shared between players */
+    @Benchmark
+    public BoundMenuImpl createBoundMenu() {
+        return new BoundMenuImpl(menu);
+    }
+
+}
@@ -0,0 +1,90 @@
+package de.dosmike.sponge.megamenus.benchmark;
+
+import de.dosmike.sponge.megamenus.api.MenuRenderer;
+import de.dosmike.sponge.megamenus.api.elements.IIcon;
+import de.dosmike.sponge.megamenus.api.elements.MIcon;
+import de.dosmike.sponge.megamenus.impl.BaseMenuImpl;
+import de.dosmike.sponge.megamenus.impl.SimulatedServer;
+import org.openjdk.jmh.annotations.*;
+import org.spongepowered.api.item.inventory.property.SlotPos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures redrawing a full inventory menu for all viewers through a GuiRenderer
+ * on the {@link SimulatedServer}. Unbound menus are drawn by one renderer for all viewers,
+ * bound menus get a renderer for every viewer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RedrawBenchmark {
+
+    @Param({"1", "3", "6"})
+    public int rows;
+
+    @Param({"1", "50", "500"})
+    public int viewers;
+
+    @Param({"false", "true"})
+    public boolean bound;
+
+    private List<MenuRenderer> renders;
+    private IIcon[] frames;
+    private MIcon changing;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        SimulatedServer.install();
+        frames = new IIcon[]{
+                IIcon.of(SimulatedServer.item("minecraft:stone")),
+                IIcon.of(SimulatedServer.item("minecraft:dirt"))
+        };
+        BaseMenuImpl menu = new BaseMenuImpl();
+        for (int i = 0; i < rows*9; i++) {
+            MIcon icon = new MIcon();
+            icon.setPosition(new SlotPos(i % 9, i / 9));
+            icon.setIcon(frames[i % 2]);
+            menu.add(1, icon);
+            if (changing == null) changing = icon;
+        }
+        renders = new ArrayList<>();
+        MenuRenderer shared = bound ? null : menu.createGuiRenderer(rows, false);
+        for (int i = 0; i < viewers; i++) {
+            MenuRenderer render = bound ? menu.createGuiRenderer(rows, true) : shared;
+            render.open(SimulatedServer.player(i));
+            if (bound || i == 0) renders.add(render);
+        }
+        //inventories are drawn in the tick after opening
+        SimulatedServer.tick();
+    }
+
+    @TearDown
+    public void tearDown() {
+        renders.forEach(MenuRenderer::closeAll);
+        SimulatedServer.tick();
+    }
+
+    /** performed when a page changes, nothing changed since the last redraw so no slot is written */
+    @Benchmark
+    public void redraw() {
+        for (MenuRenderer render : renders) {
+            render.invalidate();
+            render.revalidate();
+        }
+    }
+
+    /** performed when an animation changes the icon of an element, one slot is written for every viewer */
+    @Benchmark
+    public void redrawElement() {
+        changing.setIcon(frames[next++ & 1]);
+        for (MenuRenderer render : renders) {
+            render.invalidate(changing);
+            render.revalidate();
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package de.dosmike.sponge.megamenus.benchmark;
+
+import com.google.gson.JsonObject;
+import de.dosmike.sponge.megamenus.api.state.StateCodec;
+import de.dosmike.sponge.megamenus.api.state.StateObject;
+import de.dosmike.sponge.megamenus.api.state.StateProperties;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the state access performed for every render and click as well as
+ * serializing states for persistence as Json and binary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StateObjectBenchmark {
+
+    private StateObject state;
+    private JsonObject json;
+    private ByteBuffer binary;
+    private ByteBuffer buffer;
+    private int page = 1;
+
+    @Setup
+    public void setup() {
+        state = new StateObject();
+        state.set(StateProperties.PAGE, 1);
+        state.set("selected", true);
+        state.set("amount", 64L);
+        state.set("name", "Steve");
+        state.set("ratio", 0.5d);
+        json = state.toJson().getAsJsonObject();
+        buffer = ByteBuffer.allocate(1024);
+        try {
+            StateCodec.write(state, buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        buffer.flip();
+        binary = buffer.duplicate();
+        buffer = ByteBuffer.allocate(1024);
+    }
+
+    /** the page lookup every redraw and click does */
+    @Benchmark
+    public int getPage() {
+        return state.getInt(StateProperties.PAGE).orElse(1);
+    }
+
+    /** pagination buttons writing the page */
+    @Benchmark
+    public void setPage() {
+        page = page % 50 + 1;
+        state.set(StateProperties.PAGE, page);
+    }
+
+    /** the page lookup with a pre-computed key */
+    @Benchmark
+    public int getPageByKey() {
+        return state.getInt(StateProperties.PAGE_KEY, 1);
+    }
+
+    @Benchmark
+    public void setPageByKey() {
+        page = page % 50 + 1;
+        state.setInt(StateProperties.PAGE_KEY, page);
+    }
+
+    @Benchmark
+    public Object toJson() {
+        return state.toJson();
+    }
+
+    @Benchmark
+    public StateObject fromJson() {
+        return StateObject.fromJson(json);
+    }
+
+    @Benchmark
+    public ByteBuffer toBinary() throws IOException {
+        buffer.clear();
+        StateCodec.write(state, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public StateObject fromBinary() throws IOException {
+        return StateCodec.read(binary.duplicate());
+    }
+
+}
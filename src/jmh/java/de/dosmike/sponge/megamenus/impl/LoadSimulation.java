@@ -0,0 +1,141 @@
+package de.dosmike.sponge.megamenus.impl;
+
+import de.dosmike.sponge.megamenus.api.elements.IIcon;
+import de.dosmike.sponge.megamenus.api.elements.MButton;
+import de.dosmike.sponge.megamenus.api.elements.MIcon;
+import de.dosmike.sponge.megamenus.api.state.StateProperties;
+import de.dosmike.sponge.megamenus.api.util.Tickable;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.inventory.property.SlotPos;
+import org.spongepowered.api.text.Text;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Headless load simulation for the menu framework. Thousands of simulated players
+ * open their own bound copy of a menu with animated elements in a {@link GuiRenderer},
+ * click buttons at random and {@link RenderManager#tickRendering()} is driven as fast as possible.<br>
+ * Players, inventories and items are provided by the {@link SimulatedServer}, so menus are opened,
+ * clicked and redrawn through the same paths as on a server and slot writes are counted where
+ * the renderer writes into the inventory.<br>
+ * Run with <code>gradlew simulateLoad -Psimulation="viewers=2000 ticks=600"</code>
+ * <ul>
+ *     <li>viewers - amount of simulated players (default 1000)</li>
+ *     <li>ticks - amount of ticks to simulate (default 600)</li>
+ *     <li>pages - pages in the menu, every page has 6 full rows (default 5)</li>
+ *     <li>animated - every n-th element is an icon that changes every few ticks (default 4)</li>
+ *     <li>clickRate - chance per player and tick to click a slot (default 0.05)</li>
+ *     <li>budget - tick budget in ms passed to the RenderManager (default 0)</li>
+ * </ul>
+ */
+public class LoadSimulation {
+
+    /** animation that switches the icon every n ticks, independent of the actual time passed */
+    static Tickable animation(MIcon icon, IIcon[] frames, int everyTicks) {
+        int[] counter = {0};
+        return ms -> {
+            if (++counter[0] % everyTicks != 0) return false;
+            icon.setIcon(frames[counter[0] / everyTicks % frames.length]);
+            return true;
+        };
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int i = arg.indexOf('=');
+            if (i > 0) options.put(arg.substring(0, i), arg.substring(i+1));
+        }
+        int viewers = Integer.parseInt(options.getOrDefault("viewers", "1000"));
+        int ticks = Integer.parseInt(options.getOrDefault("ticks", "600"));
+        int pages = Integer.parseInt(options.getOrDefault("pages", "5"));
+        int animated = Integer.parseInt(options.getOrDefault("animated", "4"));
+        double clickRate = Double.parseDouble(options.getOrDefault("clickRate", "0.05"));
+        RenderManager.setTickBudget(Integer.parseInt(options.getOrDefault("budget", "0")));
+
+        SimulatedServer.install();
+        IIcon[] frames = {
+                IIcon.of(SimulatedServer.item("minecraft:stone")),
+                IIcon.of(SimulatedServer.item("minecraft:dirt"))
+        };
+        IIcon button = IIcon.of(SimulatedServer.item("minecraft:lever"));
+        Text idle = Text.of("Button");
+        Text clicked = Text.of("Clicked");
+
+        BaseMenuImpl base = new BaseMenuImpl();
+        int index = 0;
+        for (int page = 1; page <= pages; page++) {
+            for (int y = 0; y < 6; y++) for (int x = 0; x < 9; x++) {
+                //pagination, IElementImpl.validateGui also rejects x = 6 in this row
+                if (pages > 1 && y == 5 && x >= 3 && x <= 6) continue;
+                if (animated > 0 && index++ % animated == 0) {
+                    MIcon icon = new MIcon();
+                    icon.setPosition(new SlotPos(x, y));
+                    icon.setIcon(frames[0]);
+                    icon.hookThinkTick(animation(icon, frames, 2 + index % 19));
+                    base.add(page, icon);
+                } else {
+                    MButton element = new MButton();
+                    element.setPosition(new SlotPos(x, y));
+                    element.setIcon(button);
+                    element.setName(idle);
+                    element.setOnClickListener((e, player, mouse, shift) -> {
+                        e.setName(e.getName(player) == idle ? clicked : idle);
+                        e.invalidate(player);
+                    });
+                    base.add(page, element);
+                }
+            }
+        }
+
+        Random random = new Random(0x5EED);
+        List<Player> players = new ArrayList<>(viewers);
+        for (int i = 0; i < viewers; i++) {
+            Player player = SimulatedServer.player(i);
+            BoundMenuImpl menu = new BoundMenuImpl(base);
+            menu.getPlayerState(player.getUniqueId()).set(StateProperties.PAGE, 1 + random.nextInt(pages));
+            menu.createGuiRenderer(6, false).open(player);
+            players.add(player);
+        }
+        //the inventories are drawn for the first time in the tick after opening
+        SimulatedServer.tick();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long[] tickNanos = new long[ticks];
+        long clicks = 0L;
+        long slotWritesStart = SimulatedServer.getSlotWrites();
+        long allocatedStart = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            long tickStart = System.nanoTime();
+            //clicks happen between ticks, like inventory events
+            for (int i = 0; i < viewers; i++) {
+                if (random.nextDouble() >= clickRate) continue;
+                if (SimulatedServer.click(players.get(i), new SlotPos(random.nextInt(9), random.nextInt(6))))
+                    clicks++;
+            }
+            SimulatedServer.tick();
+            tickNanos[tick] = System.nanoTime() - tickStart;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedStart;
+        long slotWrites = SimulatedServer.getSlotWrites() - slotWritesStart;
+
+        Arrays.sort(tickNanos);
+        System.out.printf("viewers %d, pages %d, ticks %d, clicks %d%n", viewers, pages, ticks, clicks);
+        System.out.printf("tick time ms: p50 %.3f, p90 %.3f, p99 %.3f, max %.3f%n",
+                percentile(tickNanos, 0.5), percentile(tickNanos, 0.9), percentile(tickNanos, 0.99),
+                tickNanos[ticks-1] / 1_000_000.0);
+        System.out.printf("allocated: %.1f MB total, %.1f KB per tick, %.1f MB/s%n",
+                allocated / 1048576.0, allocated / 1024.0 / ticks, allocated / 1048576.0 / (elapsed / 1_000_000_000.0));
+        System.out.printf("slot writes: %d total, %.1f per tick%n", slotWrites, slotWrites / (double) ticks);
+        System.out.printf("render backlog after last tick: %d%n", RenderManager.getBacklog());
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length-1, (int) (sorted.length * p))] / 1_000_000.0;
+    }
+
+}
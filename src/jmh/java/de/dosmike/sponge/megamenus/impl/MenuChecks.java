@@ -0,0 +1,60 @@
+package de.dosmike.sponge.megamenus.impl;
+
+import de.dosmike.sponge.megamenus.api.MenuRenderer;
+import de.dosmike.sponge.megamenus.api.elements.IIcon;
+import de.dosmike.sponge.megamenus.api.elements.MIcon;
+import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
+import de.dosmike.sponge.megamenus.exception.ObjectBuilderException;
+import org.spongepowered.api.item.inventory.property.SlotPos;
+
+/**
+ * Headless regression checks for menu behaviour that can only be seen while rendering,
+ * run on the {@link SimulatedServer} like the {@link LoadSimulation}.<br>
+ * Run with <code>gradlew checkMenus</code>, a failing check ends the run with an exception.
+ */
+public class MenuChecks {
+
+    public static void main(String[] args) throws Exception {
+        SimulatedServer.install();
+        removeSharedElement();
+        System.out.println("all menu checks passed");
+    }
+
+    /**
+     * Bound menus share elements with the base menu. Removing such an element from the base menu
+     * must not leave the bound menus displaying an element that has no parent anymore.
+     */
+    static void removeSharedElement() throws ObjectBuilderException {
+        BaseMenuImpl base = new BaseMenuImpl();
+        for (int x = 0; x < 2; x++) {
+            MIcon icon = new MIcon();
+            icon.setPosition(new SlotPos(x, 0));
+            icon.setIcon(IIcon.of(SimulatedServer.item("minecraft:stone")));
+            base.add(1, icon);
+        }
+        BoundMenuImpl bound = new BoundMenuImpl(base);
+        MenuRenderer render = bound.createGuiRenderer(1, false);
+        render.open(SimulatedServer.player(0));
+        SimulatedServer.tick();
+
+        base.remove(1, new SlotPos(0, 0));
+        check(base.getElementsAt(1, new SlotPos(0, 0)).isEmpty(), "element was not removed from the base menu");
+        check(bound.peekElementsAt(1, new SlotPos(0, 0)).size() == 1, "bound menu lost the removed element");
+        for (IElement element : bound.peekPageElements(1)) {
+            check(element.getParent() != null, "bound menu displays an unbound element");
+            //the renderer only prints exceptions from here
+            element.validateGui(1);
+        }
+        long writes = SimulatedServer.getSlotWrites();
+        render.invalidate();
+        render.revalidate();
+        check(SimulatedServer.getSlotWrites() == writes, "redraw of the unchanged bound menu wrote slots");
+        render.closeAll();
+        SimulatedServer.tick();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new IllegalStateException(message);
+    }
+
+}
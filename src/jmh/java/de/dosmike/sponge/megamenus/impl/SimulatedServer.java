@@ -0,0 +1,531 @@
+package de.dosmike.sponge.megamenus.impl;
+
+import de.dosmike.sponge.megamenus.MegaMenus;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.Game;
+import org.spongepowered.api.GameRegistry;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.EventManager;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.event.cause.EventContext;
+import org.spongepowered.api.event.item.inventory.ClickInventoryEvent;
+import org.spongepowered.api.event.item.inventory.InteractInventoryEvent;
+import org.spongepowered.api.item.ItemType;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.item.inventory.*;
+import org.spongepowered.api.item.inventory.property.InventoryDimension;
+import org.spongepowered.api.item.inventory.property.SlotIndex;
+import org.spongepowered.api.item.inventory.property.SlotPos;
+import org.spongepowered.api.item.inventory.transaction.SlotTransaction;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.scheduler.Task;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * In-memory stand-in for the parts of a Sponge server the menu renderers use: players,
+ * menu inventories, items and the scheduler. Everything is built from {@link Proxy}s of the
+ * Sponge interfaces and installed into {@link Sponge} and {@link MegaMenus}, so renderers
+ * run unmodified.<br>
+ * Inventories built for menus keep the listener passed to the inventory builder. Clicks are
+ * delivered to that listener as {@link ClickInventoryEvent}s and every item written into a
+ * slot of such an inventory is counted.<br>
+ * Tasks run in the {@link #tick()} after the one they were submitted in, intervals are
+ * ignored. Not thread safe, everything is expected to run on the thread calling tick.
+ */
+public final class SimulatedServer {
+
+    private SimulatedServer() {}
+
+    private static boolean installed = false;
+    private static long ticks = 0L;
+    private static long slotWrites = 0L;
+    private static Map<Long, List<Runnable>> scheduled = new HashMap<>();
+    private static Map<String, ItemType> itemTypes = new HashMap<>();
+    private static PluginContainer plugin;
+    private static PluginContainer minecraft;
+
+    /**
+     * Installs the simulated game into {@link Sponge} and sets up {@link MegaMenus} as
+     * if the server had started. Calling this again does nothing.
+     */
+    public static synchronized void install() {
+        if (installed) return;
+        try {
+            GameRegistry registry = proxy(GameRegistry.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "createBuilder": return createBuilder((Class<?>) args[0]);
+                    case "getType": return args[0] == ItemType.class ? Optional.of(itemType((String) args[1])) : Optional.empty();
+                }
+                return defaultValue(proxy, method, args);
+            });
+            Game game = proxy(Game.class, (proxy, method, args) -> {
+                if (method.getName().equals("getRegistry")) return registry;
+                return defaultValue(proxy, method, args);
+            });
+            //listeners are not called, events are passed to the renderers directly
+            EventManager events = proxy(EventManager.class, SimulatedServer::defaultValue);
+            Map<Class<?>, Object> services = new HashMap<>();
+            services.put(Game.class, game);
+            services.put(GameRegistry.class, registry);
+            services.put(EventManager.class, events);
+            //the static fields sponge gets injected on startup
+            for (Field field : Sponge.class.getDeclaredFields()) {
+                Object service = services.get(field.getType());
+                if (service != null && Modifier.isStatic(field.getModifiers()))
+                    inject(field, null, service);
+            }
+
+            MegaMenus instance = new MegaMenus();
+            plugin = pluginContainer("megamenus", instance);
+            minecraft = pluginContainer("minecraft", null);
+            inject(MegaMenus.class.getDeclaredField("logger"), instance, LoggerFactory.getLogger("megamenus"));
+            instance.onServerPreInit(null);
+            //server start would also register commands, schedule tasks and load the config
+            inject(MegaMenus.class.getDeclaredField("container"), null, plugin);
+
+            ItemStack[] pagination = MegaMenus.getPaginationIcons();
+            pagination[0] = item("minecraft:arrow").createStack();
+            pagination[1] = item("minecraft:paper").createStack();
+            pagination[2] = item("minecraft:arrow").createStack();
+            inject(MegaMenus.class.getDeclaredField("paginationBack"), null, pagination[0].createSnapshot());
+            inject(MegaMenus.class.getDeclaredField("paginationNext"), null, pagination[2].createSnapshot());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to install the simulated server", e);
+        }
+        installed = true;
+    }
+
+    /** sets a field that is injected or set on server start, use a null target for static fields */
+    private static void inject(Field field, Object target, Object value) throws ReflectiveOperationException {
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * Runs all tasks that are due and ticks the {@link RenderManager}, like the
+     * server would once per tick.
+     */
+    public static void tick() {
+        ticks++;
+        List<Runnable> due = scheduled.remove(ticks);
+        if (due != null)
+            due.forEach(Runnable::run);
+        RenderManager.tickRendering();
+    }
+
+    /** @return the amount of items written into or cleared from menu slots so far */
+    public static long getSlotWrites() {
+        return slotWrites;
+    }
+
+    //region items
+    /** value of a simulated item, shared by stacks, snapshots and data containers */
+    private static final class Item {
+        final ItemType type;
+        final int quantity;
+        /** data keys and queries set on this item */
+        final Map<Object, Object> data;
+        Item(ItemType type, int quantity, Map<Object, Object> data) {
+            this.type = type;
+            this.quantity = quantity;
+            this.data = data;
+        }
+        boolean isEmpty() {
+            return quantity <= 0 || type == ItemTypes.AIR;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Item)) return false;
+            Item other = (Item) o;
+            return quantity == other.quantity && type == other.type && data.equals(other.data);
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, quantity, data);
+        }
+        @Override
+        public String toString() {
+            return quantity + "x" + type + data;
+        }
+    }
+
+    /** invocation handler of item proxies, to get the item back from a proxy */
+    private static final class ItemHandler implements InvocationHandler {
+        final Item item;
+        final InvocationHandler methods;
+        ItemHandler(Item item, InvocationHandler methods) {
+            this.item = item;
+            this.methods = methods;
+        }
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals": return args[0] != null && Proxy.isProxyClass(args[0].getClass()) &&
+                        Proxy.getInvocationHandler(args[0]) instanceof ItemHandler &&
+                        proxy.getClass() == args[0].getClass() &&
+                        item.equals(((ItemHandler) Proxy.getInvocationHandler(args[0])).item);
+                case "hashCode": return item.hashCode();
+                case "toString": return item.toString();
+                case "getType": return item.type;
+                case "getQuantity": return item.quantity;
+                case "isEmpty": return item.isEmpty();
+                case "get": return Optional.ofNullable(item.data.get(args[0]));
+            }
+            return methods.invoke(proxy, method, args);
+        }
+    }
+    /** the item of a proxy, the catalog dummy {@link ItemStackSnapshot#NONE} is the empty item */
+    private static Item itemOf(Object proxy) {
+        if (proxy == ItemStackSnapshot.NONE) proxy = EMPTY;
+        return ((ItemHandler) Proxy.getInvocationHandler(proxy)).item;
+    }
+
+    /**
+     * The empty item in menu slots and click transactions. The catalog dummy
+     * {@link ItemStackSnapshot#NONE} can't tell its type or quantity, only a real server replaces it.
+     */
+    private static final ItemStackSnapshot EMPTY = snapshot(new Item(ItemTypes.AIR, 0, Collections.emptyMap()));
+    /** @return a snapshot of no item, to be used instead of {@link ItemStackSnapshot#NONE} */
+    public static ItemStackSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param id the id of the item type, types are created on first use
+     * @return a snapshot of one item of this type
+     */
+    public static ItemStackSnapshot item(String id) {
+        return snapshot(new Item(itemType(id), 1, Collections.emptyMap()));
+    }
+
+    private static ItemType itemType(String id) {
+        return itemTypes.computeIfAbsent(id, k -> proxy(ItemType.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId": case "getName": case "toString": return id;
+                case "getTemplate": return snapshot(new Item((ItemType) proxy, 1, Collections.emptyMap()));
+                case "getMaxStackQuantity": return 64;
+            }
+            return defaultValue(proxy, method, args);
+        }));
+    }
+
+    private static ItemStackSnapshot snapshot(Item item) {
+        return proxy(ItemStackSnapshot.class, new ItemHandler(item, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "copy": return proxy;
+                case "createStack": return stack(item);
+                case "toContainer": return dataContainer(item);
+            }
+            return defaultValue(proxy, method, args);
+        }));
+    }
+
+    private static ItemStack stack(Item item) {
+        return proxy(ItemStack.class, new ItemHandler(item, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "copy": return stack(item);
+                case "createSnapshot": return snapshot(item);
+                case "toContainer": return dataContainer(item);
+                case "equalTo": return item.equals(itemOf(args[0]));
+            }
+            return defaultValue(proxy, method, args);
+        }));
+    }
+
+    /** a data container that only supports setting values, as done for the anti glitch marker */
+    private static DataContainer dataContainer(Item item) {
+        Map<Object, Object> data = new HashMap<>(item.data);
+        Item container = new Item(item.type, item.quantity, data);
+        return proxy(DataContainer.class, new ItemHandler(container, (proxy, method, args) -> {
+            if (method.getName().equals("set") && args.length == 2) {
+                data.put(args[0], args[1]);
+                return proxy;
+            }
+            return defaultValue(proxy, method, args);
+        }));
+    }
+
+    private static ItemStack.Builder itemBuilder() {
+        ItemType[] type = {ItemTypes.AIR};
+        int[] quantity = {1};
+        Map<Object, Object> data = new HashMap<>();
+        return proxy(ItemStack.Builder.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "fromSnapshot": case "fromItemStack": case "from": case "fromContainer": {
+                    Item item = itemOf(args[0]);
+                    type[0] = item.type;
+                    quantity[0] = item.quantity;
+                    data.clear();
+                    data.putAll(item.data);
+                    return proxy;
+                }
+                case "itemType": type[0] = (ItemType) args[0]; return proxy;
+                case "quantity": quantity[0] = (Integer) args[0]; return proxy;
+                case "add": data.put(args[0], args[1]); return proxy;
+                case "reset": type[0] = ItemTypes.AIR; quantity[0] = 1; data.clear(); return proxy;
+                case "build":
+                    if (args != null && args.length > 0) break;
+                    return stack(new Item(type[0], quantity[0], new HashMap<>(data)));
+            }
+            return defaultValue(proxy, method, args);
+        });
+    }
+    //endregion
+
+    //region inventories
+    /** a menu inventory built through the inventory builder */
+    private static final class Grid {
+        final Consumer<InteractInventoryEvent> listener;
+        final ItemStackSnapshot[] contents;
+        final Slot[] slots;
+        final Inventory inventory;
+        Grid(int rows, Consumer<InteractInventoryEvent> listener) {
+            this.listener = listener;
+            contents = new ItemStackSnapshot[rows*9];
+            slots = new Slot[rows*9];
+            for (int i = 0; i < slots.length; i++)
+                slots[i] = slot(i);
+            List<Slot> slotList = Collections.unmodifiableList(Arrays.asList(slots));
+            inventory = proxy(Inventory.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "first": return proxy;
+                    case "slots": return slotList;
+                    case "capacity": return slots.length;
+                    case "getPlugin": return plugin;
+                }
+                return defaultValue(proxy, method, args);
+            });
+        }
+        private Slot slot(int index) {
+            Optional<SlotIndex> property = Optional.of(SlotIndex.of(index));
+            return proxy(Slot.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getInventoryProperty": return args[0] == SlotIndex.class ? property : Optional.empty();
+                    case "set":
+                        contents[index] = ((ItemStack) args[0]).createSnapshot();
+                        slotWrites++;
+                        return null;
+                    case "clear":
+                        contents[index] = null;
+                        slotWrites++;
+                        return null;
+                    case "peek": return Optional.ofNullable(contents[index]).map(ItemStackSnapshot::createStack);
+                    case "capacity": return 1;
+                    case "size": return contents[index] == null ? 0 : 1;
+                    case "first": case "transform": return proxy;
+                    case "getPlugin": return plugin;
+                }
+                return defaultValue(proxy, method, args);
+            });
+        }
+        ItemStackSnapshot get(int index) {
+            return contents[index] == null ? EMPTY : contents[index];
+        }
+    }
+    /** menu inventories by their proxy */
+    private static Map<Inventory, Grid> grids = new WeakHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private static Inventory.Builder inventoryBuilder() {
+        int[] rows = {3};
+        Consumer<InteractInventoryEvent>[] listener = new Consumer[]{null};
+        return proxy(Inventory.Builder.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "property":
+                    Object property = args[args.length-1];
+                    if (property instanceof InventoryDimension)
+                        rows[0] = ((InventoryDimension) property).getRows();
+                    return proxy;
+                case "listener":
+                    listener[0] = (Consumer<InteractInventoryEvent>) args[1];
+                    return proxy;
+                case "build":
+                    Grid grid = new Grid(rows[0], listener[0]);
+                    grids.put(grid.inventory, grid);
+                    return grid.inventory;
+            }
+            return defaultValue(proxy, method, args);
+        });
+    }
+
+    /** an inventory that is not a menu, like the players own inventory */
+    private static Inventory foreignInventory(Class<?> type) {
+        return (Inventory) Proxy.newProxyInstance(SimulatedServer.class.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "first": return proxy;
+                case "slots": return Collections.emptyList();
+                case "getPlugin": return minecraft;
+            }
+            return defaultValue(proxy, method, args);
+        });
+    }
+
+    private static Container container(Inventory inventory) {
+        return proxy(Container.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "first": return inventory;
+                case "getPlugin": return inventory.getPlugin();
+            }
+            return defaultValue(proxy, method, args);
+        });
+    }
+    //endregion
+
+    //region players
+    /**
+     * @param index a unique number for this player
+     * @return a new player that can open inventories, other methods return defaults
+     */
+    public static Player player(int index) {
+        UUID id = new UUID(0x5EED, index);
+        String name = "Simulated" + index;
+        Container[] open = {null};
+        Inventory[] own = {null};
+        return proxy(Player.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUniqueId": return id;
+                case "getName": return name;
+                case "hashCode": return id.hashCode();
+                case "toString": return name;
+                case "getOpenInventory": return Optional.ofNullable(open[0]);
+                case "openInventory":
+                    open[0] = container((Inventory) args[0]);
+                    return Optional.of(open[0]);
+                case "closeInventory":
+                    open[0] = null;
+                    return true;
+                case "getInventory":
+                    if (own[0] == null) own[0] = foreignInventory(method.getReturnType());
+                    return own[0];
+            }
+            return defaultValue(proxy, method, args);
+        });
+    }
+
+    private static Grid openGrid(Player player) {
+        return player.getOpenInventory().map(Inventory::first).map(grids::get).orElse(null);
+    }
+
+    /**
+     * @return a transaction for the slot in the menu the player has open, changing the item
+     * currently in that slot into the replacement or null if no menu is open
+     */
+    public static SlotTransaction transaction(Player player, SlotPos pos, ItemStackSnapshot replacement) {
+        Grid grid = openGrid(player);
+        if (grid == null) return null;
+        int index = pos.getY()*9+pos.getX();
+        return new SlotTransaction(grid.slots[index], grid.get(index), replacement);
+    }
+
+    /**
+     * Picks up the item in the slot of the menu the player has open with a left click.
+     * The event is passed to the listener of the inventory, if it's not cancelled the
+     * item is taken from the slot.
+     * @return false if the player has no menu open
+     */
+    public static boolean click(Player player, SlotPos pos) {
+        Grid grid = openGrid(player);
+        if (grid == null || grid.listener == null) return false;
+        int index = pos.getY()*9+pos.getX();
+        ItemStackSnapshot item = grid.get(index);
+        List<SlotTransaction> transactions = Collections.singletonList(new SlotTransaction(grid.slots[index], item, EMPTY));
+        Transaction<ItemStackSnapshot> cursor = new Transaction<>(EMPTY, item);
+        Cause cause = Cause.of(EventContext.empty(), player);
+        Container target = player.getOpenInventory().get();
+        boolean[] cancelled = {false};
+        grid.listener.accept(proxy(ClickInventoryEvent.Primary.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getCause": return cause;
+                case "getSource": return player;
+                case "getContext": return EventContext.empty();
+                case "getTransactions": return transactions;
+                case "getCursorTransaction": return cursor;
+                case "getTargetInventory": return target;
+                case "isCancelled": return cancelled[0];
+                case "setCancelled": cancelled[0] = (Boolean) args[0]; return null;
+            }
+            return defaultValue(proxy, method, args);
+        }));
+        if (!cancelled[0] && transactions.get(0).isValid())
+            grid.contents[index] = transactions.get(0).getFinal();
+        return true;
+    }
+    //endregion
+
+    //region game
+    private static PluginContainer pluginContainer(String id, Object instance) {
+        return proxy(PluginContainer.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId": case "getName": case "toString": return id;
+                case "getInstance": return Optional.ofNullable(instance);
+            }
+            return defaultValue(proxy, method, args);
+        });
+    }
+
+    private static Object createBuilder(Class<?> type) {
+        if (type == ItemStack.Builder.class) return itemBuilder();
+        if (type == Inventory.Builder.class) return inventoryBuilder();
+        if (type == Task.Builder.class) return taskBuilder();
+        throw new IllegalArgumentException("The simulated server can't build " + type.getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Task.Builder taskBuilder() {
+        long[] delay = {0L};
+        Runnable[] task = {null};
+        return proxy(Task.Builder.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "delayTicks": delay[0] = (Long) args[0]; return proxy;
+                case "execute":
+                    task[0] = args[0] instanceof Runnable
+                            ? (Runnable) args[0]
+                            : () -> ((Consumer<Task>) args[0]).accept(null);
+                    return proxy;
+                case "submit":
+                    scheduled.computeIfAbsent(ticks + Math.max(1L, delay[0]), k -> new LinkedList<>()).add(task[0]);
+                    return null;
+            }
+            return defaultValue(proxy, method, args);
+        });
+    }
+    //endregion
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SimulatedServer.class.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    /** what proxies return for methods the simulation does not care about */
+    private static Object defaultValue(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals": return proxy == args[0];
+            case "hashCode": return System.identityHashCode(proxy);
+            case "toString": return method.getDeclaringClass().getSimpleName();
+        }
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == double.class) return 0.0;
+        if (type == float.class) return 0.0f;
+        if (type == char.class) return (char) 0;
+        if (type == Optional.class) return Optional.empty();
+        if (type.isInstance(proxy)) return proxy; //builder methods
+        return null;
+    }
+
+}
@@ -1,5 +1,6 @@
 package de.dosmike.sponge.megamenus;
 
+import de.dosmike.sponge.megamenus.impl.util.MenuMetrics;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.data.DataContainer;
 import org.spongepowered.api.data.DataQuery;
@@ -97,6 +98,7 @@ final public class AntiGlitch {
      * @param player the players inventory to scan
      */
     public static void scanInventory(Player player) {
+        long start = MenuMetrics.start();
         List<ItemStackSnapshot> hits = new LinkedList<>();
         for (Inventory i : player.getInventory().slots()) {
             if (checkItemStack(player, i.peek().orElse(ItemStack.empty()))) {
@@ -106,6 +108,7 @@ final public class AntiGlitch {
         }
         if (hits.size()>0)
             log(player, hits);
+        MenuMetrics.record(MenuMetrics.SCAN_INVENTORY, "player inventory", start);
     }
 
     /**
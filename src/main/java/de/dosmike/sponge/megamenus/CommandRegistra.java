@@ -1,5 +1,8 @@
 package de.dosmike.sponge.megamenus;
 
+import de.dosmike.sponge.megamenus.impl.RenderManager;
+import de.dosmike.sponge.megamenus.impl.StateStorage;
+import de.dosmike.sponge.megamenus.impl.util.MenuMetrics;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
@@ -10,6 +13,7 @@ import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 
 import java.io.IOException;
+import java.util.Map;
 
 final public class CommandRegistra {
 
@@ -53,8 +57,47 @@ final public class CommandRegistra {
                         return CommandResult.success();
                     }))
                     .build(), "reload")
+                .child(CommandSpec.builder()
+                    .description(Text.of("Shows how much time menus take, optionally resetting the statistics"))
+                    .permission("megamenus.command.stats")
+                    .arguments(GenericArguments.optional(GenericArguments.literal(Text.of("reset"), "reset")))
+                    .executor(((src, args) -> {
+                        if (args.hasAny("reset")) {
+                            MenuMetrics.reset();
+                            src.sendMessage(Text.of(TextColors.GREEN, "MegaMenus statistics were reset"));
+                            return CommandResult.success();
+                        }
+                        Map<String, Map<String, MenuMetrics.Stat>> stats = MenuMetrics.getStats();
+                        if (!MenuMetrics.isEnabled()) {
+                            src.sendMessage(Text.of(TextColors.GRAY, "Recording statistics is disabled, set rendering.metrics in the config to enable it"));
+                        } else if (stats.isEmpty()) {
+                            src.sendMessage(Text.of("No statistics recorded yet"));
+                        }
+                        for (Map.Entry<String, Map<String, MenuMetrics.Stat>> operation : stats.entrySet()) {
+                            src.sendMessage(Text.of(TextColors.GOLD, operation.getKey(), ":"));
+                            //the 5 subjects that took the most time in total
+                            operation.getValue().entrySet().stream()
+                                    .sorted((a, b) -> Long.compare(b.getValue().getTotalNanos(), a.getValue().getTotalNanos()))
+                                    .limit(5)
+                                    .forEach(subject -> {
+                                        MenuMetrics.Stat stat = subject.getValue();
+                                        src.sendMessage(Text.of("  ", subject.getKey(), TextColors.GRAY,
+                                                String.format(" %dx, total %.2fms, avg %.3fms, max %.3fms",
+                                                        stat.getCount(),
+                                                        stat.getTotalNanos() / 1_000_000.0,
+                                                        stat.getAverageNanos() / 1_000_000.0,
+                                                        stat.getMaxNanos() / 1_000_000.0)));
+                                    });
+                        }
+                        src.sendMessage(Text.of(TextColors.GOLD, "Render backlog: ", TextColors.RESET,
+                                RenderManager.getBacklog(), " menus for ", RenderManager.getBacklogTicks(), " ticks"));
+                        src.sendMessage(Text.of(TextColors.GOLD, "Evicted player states: ", TextColors.RESET,
+                                StateStorage.getEvictions().toString()));
+                        return CommandResult.success();
+                    }))
+                    .build(), "stats")
                 .executor((src,args)->{
-                    throw new CommandException(Text.of("Missing sub-command (pardon, reload)"));
+                    throw new CommandException(Text.of("Missing sub-command (pardon, reload, stats)"));
                 }).build(), "megamenus", "mm");
         //endregion
 
@@ -2,6 +2,7 @@ package de.dosmike.sponge.megamenus;
 
 import de.dosmike.sponge.megamenus.impl.BookRenderer;
 import de.dosmike.sponge.megamenus.impl.RenderManager;
+import de.dosmike.sponge.megamenus.impl.StateStorage;
 import org.spongepowered.api.data.type.HandTypes;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.Listener;
@@ -51,8 +52,13 @@ final public class EventListeners {
         }
     }
     @Listener
+    public void onJoin(ClientConnectionEvent.Join event) {
+        StateStorage.playerJoined(event.getTargetEntity().getUniqueId());
+    }
+    @Listener
     public void onDisconnect(ClientConnectionEvent.Disconnect event) {
         RenderManager.kickFromAll(event.getTargetEntity());
+        StateStorage.playerDisconnected(event.getTargetEntity().getUniqueId());
     }
 
     //check if book was closed and close the renderer
@@ -4,6 +4,8 @@ import com.google.inject.Inject;
 import de.dosmike.sponge.VersionChecker;
 import de.dosmike.sponge.megamenus.impl.BaseMenuImpl;
 import de.dosmike.sponge.megamenus.impl.RenderManager;
+import de.dosmike.sponge.megamenus.impl.StateStorage;
+import de.dosmike.sponge.megamenus.impl.util.MenuMetrics;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.ConfigurationOptions;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
@@ -14,18 +16,24 @@ import org.spongepowered.api.Sponge;
 import org.spongepowered.api.config.ConfigDir;
 import org.spongepowered.api.config.DefaultConfig;
 import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.key.Keys;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.game.state.GamePreInitializationEvent;
 import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
 import org.spongepowered.api.item.ItemType;
 import org.spongepowered.api.item.ItemTypes;
 import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
 import org.spongepowered.api.plugin.Plugin;
 import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.text.Text;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 
 @Plugin(id="megamenus", name="Mega Menus", version="0.8", authors={"DosMike"})
 final public class MegaMenus {
@@ -73,6 +81,7 @@ final public class MegaMenus {
                 e.printStackTrace();
             }
         }).submit(this);
+        Task.builder().intervalTicks(20).execute(StateStorage::tick).submit(this);
 
         try {
             loadConfig();
@@ -82,11 +91,36 @@ final public class MegaMenus {
         VersionChecker.checkVersion(this);
     }
 
+    @Listener
+    public void onServerStopping(GameStoppingServerEvent event) {
+        StateStorage.shutdown();
+    }
+
     private static ItemStack[] paginationIcons = new ItemStack[3];
     /** arrray contains icons (in order) for previous, pageno, next */
     public static ItemStack[] getPaginationIcons() {
         return paginationIcons;
     }
+    private static ItemStackSnapshot paginationBack = ItemStackSnapshot.NONE;
+    private static ItemStackSnapshot paginationNext = ItemStackSnapshot.NONE;
+    /** page indicators by (page &lt;&lt; 32 | pages) */
+    private static Map<Long, ItemStackSnapshot> pageIndicators = new HashMap<>();
+    /** @return the pagination button for the previous page, built when the config is loaded */
+    public static ItemStackSnapshot getPaginationBack() {
+        return paginationBack;
+    }
+    /** @return the pagination button for the next page, built when the config is loaded */
+    public static ItemStackSnapshot getPaginationNext() {
+        return paginationNext;
+    }
+    /** @return the page indicator showing this page number, built once for every page and page count */
+    public static ItemStackSnapshot getPageIndicator(int page, int pages) {
+        return pageIndicators.computeIfAbsent(((long) page << 32) | pages, k->
+                ItemStack.builder().from(paginationIcons[1])
+                        .add(Keys.DISPLAY_NAME, Text.of("Page ",page,"/",pages))
+                        .quantity(page)
+                        .build().createSnapshot());
+    }
     /** @return the iicon or null if parsing failed */
     private ItemStack parsePaginationIconString(String s) {
         String[] parts = s.split(":");
@@ -125,35 +159,39 @@ final public class MegaMenus {
     @DefaultConfig(sharedRoot = true)
     public ConfigurationLoader<CommentedConfigurationNode> loader;
 
+    /**
+     * Fills a group that's missing from the config with the values from defaults.conf
+     * @param root the loaded config
+     * @param defaults the contents of defaults.conf
+     * @param name the name of the group
+     * @return true if the group was missing and the config has to be saved
+     */
+    private static boolean mergeDefaults(ConfigurationNode root, ConfigurationNode defaults, String name) {
+        ConfigurationNode group = root.getNode(name);
+        if (!group.isVirtual()) return false;
+        group.mergeValuesFrom(defaults.getNode(name));
+        //set the value (i assume mergin values does not clear the virtual flag)
+        root.getNode(name).setValue(group);
+        return true;
+    }
+
     void loadConfig() throws IOException {
         boolean needsSaving = false;
         CommentedConfigurationNode root = loader.load(ConfigurationOptions.defaults());
+        CommentedConfigurationNode defaults = HoconConfigurationLoader.builder()
+                .setURL(Sponge.getAssetManager()
+                        .getAsset(this, "defaults.conf").get()
+                        .getUrl())
+                .build()
+                .load(ConfigurationOptions.defaults());
         if (root.isVirtual()) {
-            ConfigurationLoader<CommentedConfigurationNode> defaults =
-                    HoconConfigurationLoader.builder()
-                            .setURL(Sponge.getAssetManager()
-                                    .getAsset(this, "defaults.conf").get()
-                                    .getUrl())
-                            .build();
-            root.mergeValuesFrom(defaults.load(ConfigurationOptions.defaults()));
+            root.mergeValuesFrom(defaults);
             needsSaving = true;
         }
 
 
+        needsSaving |= mergeDefaults(root, defaults, "antiglitch");
         ConfigurationNode group = root.getNode("antiglitch");
-        if (group.isVirtual()) {
-            ConfigurationLoader<CommentedConfigurationNode> defaults =
-                    HoconConfigurationLoader.builder()
-                            .setURL(Sponge.getAssetManager()
-                                    .getAsset(this, "defaults.conf").get()
-                                    .getUrl())
-                            .build();
-            CommentedConfigurationNode defgroup = defaults.load(ConfigurationOptions.defaults()).getNode("antiglitch");
-            group.mergeValuesFrom(defgroup);
-            //set the value (i assume mergin values does not clear the virtual flag)
-            root.getNode("antiglitch").setValue(group);
-            needsSaving = true;
-        }
 
         AntiGlitch.setup(
                 group.getNode("enabled").getBoolean(true),
@@ -161,26 +199,38 @@ final public class MegaMenus {
                 group.getNode("verboseLogging").getBoolean(true)
         );
 
+        needsSaving |= mergeDefaults(root, defaults, "pagination");
         group = root.getNode("pagination");
-        if (group.isVirtual()) {
-            ConfigurationLoader<CommentedConfigurationNode> defaults =
-                    HoconConfigurationLoader.builder()
-                            .setURL(Sponge.getAssetManager()
-                                    .getAsset(this, "defaults.conf").get()
-                                    .getUrl())
-                            .build();
-            CommentedConfigurationNode defgroup = defaults.load(ConfigurationOptions.defaults()).getNode("pagination");
-            group.mergeValuesFrom(defgroup);
-            //set the value (i assume mergin values does not clear the virtual flag)
-            root.getNode("pagination").setValue(group);
-            needsSaving = true;
-        }
         ItemStack icon = parsePaginationIconString(group.getNode("previous").getString("minecraft:arrow"));
         paginationIcons[0] = icon == null ? ItemStack.of(ItemTypes.ARROW) : icon;
         icon = parsePaginationIconString(group.getNode("current").getString("minecraft:paper"));
         paginationIcons[1] = icon == null ? ItemStack.of(ItemTypes.PAPER) : icon;
         icon = parsePaginationIconString(group.getNode("next").getString("minecraft:arrow"));
         paginationIcons[2] = icon == null ? ItemStack.of(ItemTypes.ARROW) : icon;
+        paginationBack = ItemStack.builder().from(paginationIcons[0])
+                .add(Keys.DISPLAY_NAME, Text.of("< Back"))
+                .build().createSnapshot();
+        paginationNext = ItemStack.builder().from(paginationIcons[2])
+                .add(Keys.DISPLAY_NAME, Text.of("Next >"))
+                .build().createSnapshot();
+        pageIndicators.clear();
+
+        needsSaving |= mergeDefaults(root, defaults, "rendering");
+        group = root.getNode("rendering");
+        RenderManager.setTickBudget(group.getNode("tickBudget").getInt(5));
+        MenuMetrics.setEnabled(group.getNode("metrics").getBoolean(false));
+
+        needsSaving |= mergeDefaults(root, defaults, "states");
+        group = root.getNode("states");
+        StateStorage.configure(
+                group.getNode("flushInterval").getInt(30),
+                group.getNode("idleTimeout").getInt(10)
+        );
+        StateStorage.configureRetention(
+                group.getNode("discardTimeout").getInt(60),
+                group.getNode("maxEntries").getInt(10000),
+                group.getNode("dropOnDisconnect").getBoolean(false)
+        );
 
         CommentedConfigurationNode vcnode = root.getNode("VersionChecker");
         if (vcnode.isVirtual()) { //patch value into config if missing
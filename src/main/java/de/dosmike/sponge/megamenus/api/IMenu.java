@@ -137,7 +137,10 @@ public interface IMenu extends Identifiable {
     /**
      * Menu states are copied into copies and children, meaning base values are
      * present in copies, but changes within the states of copies are not
-     * reflected in the base state
+     * reflected in the base state.<br>
+     * States of offline players are discarded after some time or when a menu holds too many
+     * states, as configured in the states section of the config. Use
+     * {@link #persistPlayerStates(String)} to keep them.
      * @return the player specific State object for this menu
      */
     StateObject getPlayerState(UUID playerID);
@@ -190,6 +193,18 @@ public interface IMenu extends Identifiable {
      * Remove all entries from all player state objects
      */
     void clearPlayerStateMap();
+
+    /**
+     * Keep the player states of this menu across restarts. States are loaded from the
+     * {@link de.dosmike.sponge.megamenus.impl.StateStorage} in the background when a player
+     * joins or the first time they are requested, changes are saved in the background and states of offline players are
+     * unloaded when idle. Methods listing player states only see states currently loaded.<br>
+     * Values in persistent states need a {@link de.dosmike.sponge.megamenus.api.state.StateCodec}.
+     * @param name a name for this menu that does not change between restarts and is
+     *             unique across plugins, e.g. prefixed with your plugin id
+     * @throws IllegalArgumentException if the name is empty or only consists of dots
+     */
+    void persistPlayerStates(String name);
     //endregion
 
     //region rendering
@@ -238,9 +253,9 @@ public interface IMenu extends Identifiable {
      * (usually next tick).
      */
     default void invalidate(Player player) {
-        RenderManager.getRenderFor(this).stream()
-                .filter(r->r.getViewers().contains(player))
-                .findFirst().ifPresent(MenuRenderer::invalidate);
+        RenderManager.getRenderFor(player)
+                .filter(r->RenderManager.getRenderFor(this).contains(r))
+                .ifPresent(MenuRenderer::invalidate);
     }
     //endregion
 
@@ -1,5 +1,6 @@
 package de.dosmike.sponge.megamenus.api;
 
+import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
 import de.dosmike.sponge.megamenus.api.listener.OnRenderStateListener;
 import de.dosmike.sponge.megamenus.impl.AnimationManager;
 import org.spongepowered.api.entity.living.player.Player;
@@ -22,12 +23,29 @@ public interface MenuRenderer {
      */
     void invalidate();
 
+    /**
+     * will cause the slots occupied by this element to redraw in the near future.<br>
+     * Renderer that are not able to redraw single elements will redraw the whole menu.
+     * @param element the element that changed
+     */
+    default void invalidate(IElement element) {
+        invalidate();
+    }
+
     /**
      * this method may be called at any arbitrary moment to notify the renderer to
      * redraw the menu for all viewers if the menu was invalidated
      */
     void revalidate();
 
+    /**
+     * @return true if the next call to {@link #revalidate()} would redraw anything.
+     *         Renderer that can't tell should always return true
+     */
+    default boolean needsRevalidation() {
+        return true;
+    }
+
     /**
      * @return all players currently observing the menu through this renderer
      */
@@ -82,6 +100,7 @@ public interface MenuRenderer {
 
     /**
      * this method shall update all animated IElements within the menu.
+     * Elements on pages that are not displayed to any viewer may be skipped.
      * @param animations is a tracker to prevent double frame advancement for shared anim objects
      */
     void think(AnimationManager animations);
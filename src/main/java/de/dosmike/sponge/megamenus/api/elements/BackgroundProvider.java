@@ -4,6 +4,7 @@ import de.dosmike.sponge.megamenus.api.IMenu;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
 import de.dosmike.sponge.megamenus.api.state.StateObject;
 import de.dosmike.sponge.megamenus.api.util.Tickable;
+import de.dosmike.sponge.megamenus.api.util.ViewerIndependent;
 import org.spongepowered.api.data.key.Keys;
 import org.spongepowered.api.data.type.DyeColors;
 import org.spongepowered.api.item.ItemTypes;
@@ -32,7 +33,7 @@ public interface BackgroundProvider extends Tickable {
     /**
      * A standard Background Provider that does not fill empty slots
      */
-    BackgroundProvider BACKGROUND_DEFAULT = (pos,g,v)->null;
+    BackgroundProvider BACKGROUND_DEFAULT = (BackgroundProvider & ViewerIndependent) (pos,g,v)->null;
 
     /**
      * The icon returned by {@literal BACKGROUND_GRAYPANE}
@@ -41,7 +42,7 @@ public interface BackgroundProvider extends Tickable {
     /**
      * A standard Background Provider that fills empty slots with gray stained glass panes
      */
-    BackgroundProvider BACKGROUND_GRAYPANE = (pos,g,v)->GRAY_PANE_IICON;
+    BackgroundProvider BACKGROUND_GRAYPANE = (BackgroundProvider & ViewerIndependent) (pos,g,v)->GRAY_PANE_IICON;
 
     @Override
     default boolean tick(int ms) {
@@ -121,6 +121,10 @@ public interface IIcon extends Tickable {
                     }
                     return change;
                 }
+                @Override
+                public int getTickInterval() {
+                    return icons.length > 1 ? frameTime - passedTime + 1 : -1;
+                }
             };
         }
     }
@@ -141,6 +145,10 @@ public interface IIcon extends Tickable {
             public ItemStackSnapshot render() {
                 return display;
             }
+            @Override
+            public int getTickInterval() {
+                return -1;
+            }
         };
     }
     /**
@@ -154,6 +162,10 @@ public interface IIcon extends Tickable {
             public ItemStackSnapshot render() {
                 return display;
             }
+            @Override
+            public int getTickInterval() {
+                return -1;
+            }
         };
     }
     /**
@@ -167,6 +179,10 @@ public interface IIcon extends Tickable {
             public ItemStackSnapshot render() {
                 return display;
             }
+            @Override
+            public int getTickInterval() {
+                return -1;
+            }
         };
     }
 
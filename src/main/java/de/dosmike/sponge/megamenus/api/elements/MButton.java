@@ -4,6 +4,7 @@ import de.dosmike.sponge.megamenus.api.elements.concepts.IClickable;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IPressable;
 import de.dosmike.sponge.megamenus.api.listener.OnClickListener;
 import de.dosmike.sponge.megamenus.api.listener.OnKeyListener;
+import de.dosmike.sponge.megamenus.api.util.ViewerIndependent;
 import de.dosmike.sponge.megamenus.impl.RenderManager;
 import de.dosmike.sponge.megamenus.impl.TextMenuRenderer;
 import de.dosmike.sponge.megamenus.impl.elements.IElementImpl;
@@ -25,7 +26,7 @@ import java.util.List;
 /**
  * This element acts like a button, it can be clicked at and performs an action.
  */
-final public class MButton extends IElementImpl implements IClickable<MButton>, IPressable<MButton> {
+final public class MButton extends IElementImpl implements IClickable<MButton>, IPressable<MButton>, ViewerIndependent {
 
     private IIcon defaultIcon = null;
     private OnClickListener<MButton> clickListener = null;
@@ -1,5 +1,6 @@
 package de.dosmike.sponge.megamenus.api.elements;
 
+import de.dosmike.sponge.megamenus.api.util.ViewerIndependent;
 import de.dosmike.sponge.megamenus.impl.elements.IElementImpl;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.api.entity.living.player.Player;
@@ -17,7 +18,7 @@ import java.util.List;
  * Other than MLabel this will render as {@link ItemStack} on hover in a Text UI.<br>
  * For GUI renders it behaves exactly like an {@link MLabel}
  */
-final public class MIcon extends IElementImpl {
+final public class MIcon extends IElementImpl implements ViewerIndependent {
 
     private IIcon defaultIcon = null;
     private Text defaultName = Text.of(getClass().getSimpleName());
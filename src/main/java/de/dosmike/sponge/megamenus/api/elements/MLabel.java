@@ -1,5 +1,6 @@
 package de.dosmike.sponge.megamenus.api.elements;
 
+import de.dosmike.sponge.megamenus.api.util.ViewerIndependent;
 import de.dosmike.sponge.megamenus.impl.elements.IElementImpl;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.api.entity.living.player.Player;
@@ -18,7 +19,7 @@ import java.util.List;
  * This is a special element for Text UIs that won't render as {@link ItemStack} on hover.<br>
  * For GUI renders it behaves exactly like an {@link MIcon}
  */
-final public class MLabel extends IElementImpl {
+final public class MLabel extends IElementImpl implements ViewerIndependent {
 
     private IIcon defaultIcon = null;
     private Text defaultName = Text.of(getClass().getSimpleName());
@@ -112,7 +112,10 @@ public interface IElement extends Identifiable {
 
     /**
      * Takes the IICon, adds element specific data and returns it to be rendered in a
-     * inventory menu.
+     * inventory menu.<br>
+     * Slots should be written through {@link de.dosmike.sponge.megamenus.impl.GuiRenderer#paintSlot},
+     * the renderer only sends slots that changed since the last redraw. All slots written in any
+     * other way have to be returned, so the renderer updates them again later.
      * @param viewer the actual player requesting this IElement to render
      * @return all affected slots by this element
      */
@@ -162,6 +165,18 @@ public interface IElement extends Identifiable {
      */
     boolean think(AnimationManager animations, Player viewer);
 
+    /**
+     * Allows renderer to skip this element until it has to {@link #think} again.<br>
+     * The default implementation asks to think every render cycle.
+     * @param animations the tracker passed to think
+     * @param viewer the Player currently viewing this element
+     * @return the render cycle this element has to think in next, or Long.MAX_VALUE if it never animates
+     * @see AnimationManager#getDueCycle
+     */
+    default long getNextThink(AnimationManager animations, Player viewer) {
+        return animations.getCycle() + 1;
+    }
+
 
     /**
      * A single object that can be registered to implement more complex behaviour.<br>
@@ -171,12 +186,12 @@ public interface IElement extends Identifiable {
     void hookThinkTick(Tickable hook);
 
     /**
-     * Invalidates this elements Menu for all Renderer through the RenderManager.
-     * This will cause a redraw in the near future (usually next tick).
+     * Invalidates this element for all Renderer of its Menu through the RenderManager.
+     * This will cause the slots of this element to redraw in the near future (usually next tick).
      */
     default void invalidate() {
         if (getParent() != null)
-            RenderManager.getRenderFor(getParent()).forEach(MenuRenderer::invalidate);
+            RenderManager.getRenderFor(getParent()).forEach(r->r.invalidate(this));
     }
 
     /**
@@ -186,8 +201,8 @@ public interface IElement extends Identifiable {
      */
     default void invalidate(Player viewer) {
         if (getParent() != null)
-            RenderManager.getRenderFor(getParent()).stream()
-                    .filter(r->r.getMenu().equals(getParent()) && r.getViewers().contains(viewer))
-                    .findFirst().ifPresent(MenuRenderer::invalidate);
+            RenderManager.getRenderFor(viewer)
+                    .filter(r->RenderManager.getRenderFor(getParent()).contains(r))
+                    .ifPresent(r->r.invalidate(this));
     }
 }
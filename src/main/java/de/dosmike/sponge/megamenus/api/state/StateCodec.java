@@ -0,0 +1,308 @@
+package de.dosmike.sponge.megamenus.api.state;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Binary format for {@link StateObject}s. Every value type needs a registered {@link Codec},
+ * there is no fallback to java serialization. Codecs for primitive wrappers, String, UUID,
+ * BigInteger and BigDecimal are registered by default. Values of subclasses use the codec
+ * of the closest registered super class or interface.<br>
+ * The format is a version byte, the amount of entries as var-int and for every entry
+ * the key as string, the codec tag as byte and the value as written by the codec.
+ * Null values are written with the tag {@link #NULL_TAG} and no value.
+ * Strings are written as var-int length followed by the UTF-8 bytes.
+ */
+final public class StateCodec {
+
+    /** the current format version, written as first byte */
+    public static final int VERSION = 1;
+    /** tags below this value are reserved for MegaMenus */
+    public static final int FIRST_CUSTOM_TAG = 64;
+    /** the tag written for null values */
+    public static final int NULL_TAG = 0;
+
+    /**
+     * Writes and reads values of one type
+     * @param <T> the type of values handled
+     */
+    public interface Codec<T extends Serializable> {
+        void write(DataOutput out, T value) throws IOException;
+        T read(DataInput in) throws IOException;
+    }
+
+    private static final class Registration<T extends Serializable> {
+        final int tag;
+        final Class<T> type;
+        final Codec<T> codec;
+        Registration(int tag, Class<T> type, Codec<T> codec) {
+            this.tag = tag;
+            this.type = type;
+            this.codec = codec;
+        }
+    }
+    private static final Registration<?>[] byTag = new Registration[256];
+    private static final Map<Class<?>, Registration<?>> byType = new HashMap<>();
+
+    static {
+        registerInternal(1, Boolean.class, new Codec<Boolean>() {
+            public void write(DataOutput out, Boolean value) throws IOException { out.writeBoolean(value); }
+            public Boolean read(DataInput in) throws IOException { return in.readBoolean(); }
+        });
+        registerInternal(2, Byte.class, new Codec<Byte>() {
+            public void write(DataOutput out, Byte value) throws IOException { out.writeByte(value); }
+            public Byte read(DataInput in) throws IOException { return in.readByte(); }
+        });
+        registerInternal(3, Short.class, new Codec<Short>() {
+            public void write(DataOutput out, Short value) throws IOException { out.writeShort(value); }
+            public Short read(DataInput in) throws IOException { return in.readShort(); }
+        });
+        registerInternal(4, Integer.class, new Codec<Integer>() {
+            public void write(DataOutput out, Integer value) throws IOException { writeVarLong(out, zigZag(value)); }
+            public Integer read(DataInput in) throws IOException { return (int) unZigZag(readVarLong(in)); }
+        });
+        registerInternal(5, Long.class, new Codec<Long>() {
+            public void write(DataOutput out, Long value) throws IOException { writeVarLong(out, zigZag(value)); }
+            public Long read(DataInput in) throws IOException { return unZigZag(readVarLong(in)); }
+        });
+        registerInternal(6, Float.class, new Codec<Float>() {
+            public void write(DataOutput out, Float value) throws IOException { out.writeFloat(value); }
+            public Float read(DataInput in) throws IOException { return in.readFloat(); }
+        });
+        registerInternal(7, Double.class, new Codec<Double>() {
+            public void write(DataOutput out, Double value) throws IOException { out.writeDouble(value); }
+            public Double read(DataInput in) throws IOException { return in.readDouble(); }
+        });
+        registerInternal(8, String.class, new Codec<String>() {
+            public void write(DataOutput out, String value) throws IOException { writeString(out, value); }
+            public String read(DataInput in) throws IOException { return readString(in); }
+        });
+        registerInternal(9, UUID.class, new Codec<UUID>() {
+            public void write(DataOutput out, UUID value) throws IOException {
+                out.writeLong(value.getMostSignificantBits());
+                out.writeLong(value.getLeastSignificantBits());
+            }
+            public UUID read(DataInput in) throws IOException { return new UUID(in.readLong(), in.readLong()); }
+        });
+        registerInternal(10, BigInteger.class, new Codec<BigInteger>() {
+            public void write(DataOutput out, BigInteger value) throws IOException { writeBytes(out, value.toByteArray()); }
+            public BigInteger read(DataInput in) throws IOException { return new BigInteger(readBytes(in)); }
+        });
+        registerInternal(11, BigDecimal.class, new Codec<BigDecimal>() {
+            public void write(DataOutput out, BigDecimal value) throws IOException {
+                writeVarLong(out, zigZag(value.scale()));
+                writeBytes(out, value.unscaledValue().toByteArray());
+            }
+            public BigDecimal read(DataInput in) throws IOException {
+                int scale = (int) unZigZag(readVarLong(in));
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            }
+        });
+        registerInternal(12, Character.class, new Codec<Character>() {
+            public void write(DataOutput out, Character value) throws IOException { out.writeChar(value); }
+            public Character read(DataInput in) throws IOException { return in.readChar(); }
+        });
+    }
+
+    private static <T extends Serializable> void registerInternal(int tag, Class<T> type, Codec<T> codec) {
+        Registration<T> registration = new Registration<>(tag, type, codec);
+        byTag[tag] = registration;
+        byType.put(type, registration);
+    }
+
+    /**
+     * Register a codec for a custom value type, so StateObjects containing such values can be
+     * written. The tag is stored with every value, so it must not change between server restarts.
+     * @param tag a unique id for this type, between {@link #FIRST_CUSTOM_TAG} and 255
+     * @param type the exact class of values this codec writes
+     * @param codec the codec to use
+     * @throws IllegalArgumentException if the tag is reserved or the tag or type is already registered
+     */
+    public static synchronized <T extends Serializable> void register(int tag, Class<T> type, Codec<T> codec) {
+        if (tag < FIRST_CUSTOM_TAG || tag > 255)
+            throw new IllegalArgumentException("Tag has to be in range "+FIRST_CUSTOM_TAG+" to 255");
+        if (byTag[tag] != null)
+            throw new IllegalArgumentException("Tag "+tag+" is already used for "+byTag[tag].type.getName());
+        if (byType.containsKey(type))
+            throw new IllegalArgumentException("A codec for "+type.getName()+" is already registered");
+        registerInternal(tag, type, codec);
+    }
+
+    /**
+     * Writes all entries of the state into the stream
+     * @param state the state to write
+     * @param out the stream to write to, will not be closed
+     * @throws IOException if writing fails or a value has no registered codec
+     */
+    public static void write(StateObject state, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        write(state, (DataOutput) data);
+        data.flush();
+    }
+    /**
+     * Writes all entries of the state into the buffer, starting at the current position
+     * @param state the state to write
+     * @param buffer the buffer to write to
+     * @throws IOException if a value has no registered codec
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void write(StateObject state, ByteBuffer buffer) throws IOException {
+        write(state, (DataOutput) new DataOutputStream(new OutputStream() {
+            @Override public void write(int b) { buffer.put((byte) b); }
+            @Override public void write(byte[] b, int off, int len) { buffer.put(b, off, len); }
+        }));
+    }
+    /**
+     * Writes all entries of the state
+     * @param state the state to write
+     * @param out where to write to
+     * @throws IOException if writing fails or a value has no registered codec
+     */
+    public static void write(StateObject state, DataOutput out) throws IOException {
+        Map<StateKey, Serializable> entries = state.entries();
+        out.writeByte(VERSION);
+        writeVarLong(out, entries.size());
+        for (Map.Entry<StateKey, Serializable> e : entries.entrySet()) {
+            if (e.getValue() == null) {
+                writeString(out, e.getKey().getName());
+                out.writeByte(NULL_TAG);
+                continue;
+            }
+            Registration<Serializable> registration = lookup(e.getValue().getClass());
+            if (registration == null)
+                throw new IOException("No codec registered for "+e.getValue().getClass().getName()+" ("+e.getKey()+")");
+            writeString(out, e.getKey().getName());
+            out.writeByte(registration.tag);
+            registration.codec.write(out, e.getValue());
+        }
+    }
+
+    /**
+     * Reads a state written by any write method
+     * @param in the stream to read from, will not be closed
+     * @return the restored state
+     * @throws IOException if reading fails, the version is unknown or a codec is missing
+     */
+    public static StateObject read(InputStream in) throws IOException {
+        return read((DataInput) new DataInputStream(in));
+    }
+    /**
+     * Reads a state written by any write method, starting at the current position
+     * @param buffer the buffer to read from
+     * @return the restored state
+     * @throws IOException if the version is unknown or a codec is missing
+     */
+    public static StateObject read(ByteBuffer buffer) throws IOException {
+        return read((DataInput) new DataInputStream(new InputStream() {
+            @Override public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+            @Override public int read(byte[] b, int off, int len) {
+                if (!buffer.hasRemaining()) return -1;
+                len = Math.min(len, buffer.remaining());
+                buffer.get(b, off, len);
+                return len;
+            }
+        }));
+    }
+    /**
+     * Reads a state written by any write method
+     * @param in where to read from
+     * @return the restored state
+     * @throws IOException if reading fails, the version is unknown or a codec is missing
+     */
+    public static StateObject read(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported state format version "+version);
+        StateObject state = new StateObject();
+        long size = readVarLong(in);
+        for (long i = 0; i < size; i++) {
+            StateKey key = StateKey.of(readString(in));
+            int tag = in.readUnsignedByte();
+            if (tag == NULL_TAG) {
+                state.set(key, null);
+                continue;
+            }
+            Registration<?> registration = byTag[tag];
+            if (registration == null)
+                throw new IOException("No codec registered for tag "+tag+" ("+key+")");
+            state.set(key, registration.codec.read(in));
+        }
+        return state;
+    }
+
+    /**
+     * Finds the codec for the type, or the closest registered super class. Interfaces are
+     * searched after all super classes, in the order they are declared.
+     */
+    @SuppressWarnings("unchecked")
+    private static synchronized Registration<Serializable> lookup(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            Registration<?> registration = byType.get(c);
+            if (registration != null) return (Registration<Serializable>) registration;
+        }
+        Deque<Class<?>> interfaces = new ArrayDeque<>();
+        Set<Class<?>> seen = new HashSet<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass())
+            interfaces.addAll(Arrays.asList(c.getInterfaces()));
+        while (!interfaces.isEmpty()) {
+            Class<?> c = interfaces.poll();
+            if (!seen.add(c)) continue;
+            Registration<?> registration = byType.get(c);
+            if (registration != null) return (Registration<Serializable>) registration;
+            interfaces.addAll(Arrays.asList(c.getInterfaces()));
+        }
+        return null;
+    }
+
+    //region helper
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    /** writes 7 bits per byte, small values take a single byte */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0L) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed var-int");
+    }
+    /** strings are written as var-int length and UTF-8 bytes, unlike writeUTF they are not limited to 64k */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+    public static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+    private static byte[] readBytes(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE)
+            throw new IOException("Malformed length "+length);
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+    //endregion
+
+}
@@ -0,0 +1,96 @@
+package de.dosmike.sponge.megamenus.api.state;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A pre-computed key for {@link StateObject}s. Keys are case-insensitive and there is only
+ * one instance per name, so lookups with a StateKey don't have to normalize the name and
+ * can compare by identity. Keep frequently used keys in a constant.<br>
+ * Keys are only held weakly, a key nobody references anymore is forgotten and a new
+ * instance is created the next time it's requested. Looking up an existing key does
+ * not lock or allocate, if the name is lower case already.
+ */
+final public class StateKey implements Serializable {
+
+    private static final class KeyReference extends WeakReference<StateKey> {
+        final String name;
+        KeyReference(StateKey key) {
+            super(key, collected);
+            this.name = key.name;
+        }
+    }
+    /** keys by lower case name */
+    private static final ConcurrentMap<String, KeyReference> keys = new ConcurrentHashMap<>();
+    /** references of collected keys, removed from the map when the next key is created */
+    private static final ReferenceQueue<StateKey> collected = new ReferenceQueue<>();
+
+    private final String name;
+    private final transient int hash;
+
+    private StateKey(String name) {
+        this.name = name;
+        this.hash = name.hashCode();
+    }
+
+    /**
+     * Get the key for the name. Names are case-insensitive.
+     * @param name the name of the key
+     * @return the only instance for this name
+     */
+    public static StateKey of(String name) {
+        //names are usually lower case already, normalized names never contain upper case
+        StateKey key = lookup(name);
+        if (key != null) return key;
+        String normalized = name.toLowerCase();
+        key = lookup(normalized);
+        if (key != null) return key;
+
+        for (KeyReference ref; (ref = (KeyReference) collected.poll()) != null; )
+            keys.remove(ref.name, ref);
+        StateKey created = new StateKey(normalized);
+        KeyReference reference = new KeyReference(created);
+        while (true) {
+            KeyReference previous = keys.putIfAbsent(normalized, reference);
+            if (previous == null) return created;
+            StateKey existing = previous.get();
+            if (existing != null) return existing;
+            //the previous key was collected, but not yet removed
+            if (keys.replace(normalized, previous, reference)) return created;
+        }
+    }
+    private static StateKey lookup(String name) {
+        KeyReference ref = keys.get(name);
+        return ref != null ? ref.get() : null;
+    }
+
+    /** @return the lower case name of this key */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /** keep keys unique when deserialized */
+    private Object readResolve() throws ObjectStreamException {
+        return of(name);
+    }
+
+}
@@ -10,11 +10,67 @@ import java.util.*;
 
 /**
  * This is a generic state that can be attached to a menu. It is meant to store smaller data.
- * Generally these states do not persis, but you can get and set them to menus at any time.
+ * Generally these states do not persis, but you can get and set them to menus at any time.<br>
+ * For frequently accessed values use the {@link StateKey} methods: they skip normalizing the
+ * key and int, long, double and boolean values can be read and written without boxing.<br>
+ * For persistence, {@link StateCodec} offers a compact binary format besides Json.
  */
 final public class StateObject implements Serializable {
 
-    private Map<String, Serializable> state = new HashMap<>();
+    /** the id computed for the original format, that only had String keys */
+    private static final long serialVersionUID = -1964661633689741950L;
+
+    /** mutable holders for primitive values, so updating and reading them does not box */
+    private static final class IntSlot implements Serializable {
+        private static final long serialVersionUID = 1L;
+        int value;
+        IntSlot(int value) { this.value = value; }
+    }
+    private static final class LongSlot implements Serializable {
+        private static final long serialVersionUID = 1L;
+        long value;
+        LongSlot(long value) { this.value = value; }
+    }
+    private static final class DoubleSlot implements Serializable {
+        private static final long serialVersionUID = 1L;
+        double value;
+        DoubleSlot(double value) { this.value = value; }
+    }
+    private static final class BooleanSlot implements Serializable {
+        private static final long serialVersionUID = 1L;
+        boolean value;
+        BooleanSlot(boolean value) { this.value = value; }
+    }
+
+    /** values are either slots for primitive values or the Serializable as passed */
+    private Map<StateKey, Serializable> state = new HashMap<>();
+    /** counts changes, so persistence can tell whether this state needs saving */
+    private transient long modifications = 0L;
+
+    /**
+     * States serialized before {@link StateKey}s were introduced use plain String keys and
+     * boxed primitive values, values are set again to put them into primitive slots
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        Map<Object, Serializable> read = (Map<Object, Serializable>) (Map<?, ?>) state;
+        state = new HashMap<>(read.size());
+        for (Map.Entry<Object, Serializable> e : read.entrySet()) {
+            StateKey key = e.getKey() instanceof StateKey
+                    ? (StateKey) e.getKey()
+                    : StateKey.of(String.valueOf(e.getKey()));
+            set(key, e.getValue());
+        }
+        modifications = 0L;
+    }
+
+    /**
+     * @return a number that changes every time a value is set or removed
+     */
+    public long getModificationCount() {
+        return modifications;
+    }
 
     /**
      * Set a value to the specified key. Keys are case-insesitive.
@@ -22,16 +78,66 @@ final public class StateObject implements Serializable {
      * @param value the value to associate with the key
      */
     public void set(String key, Serializable value) {
-        state.put(key.toLowerCase(), value);
+        set(StateKey.of(key), value);
+    }
+    /**
+     * Set a value to the specified key.
+     * @param key the key to save a value to
+     * @param value the value to associate with the key
+     */
+    public void set(StateKey key, Serializable value) {
+        if (value instanceof Integer) {
+            setInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            setLong(key, (Long) value);
+        } else if (value instanceof Double) {
+            setDouble(key, (Double) value);
+        } else if (value instanceof Boolean) {
+            setBoolean(key, (Boolean) value);
+        } else {
+            state.put(key, value);
+            modifications++;
+        }
+    }
+    public void setInt(StateKey key, int value) {
+        Serializable slot = state.get(key);
+        if (slot instanceof IntSlot) ((IntSlot) slot).value = value;
+        else state.put(key, new IntSlot(value));
+        modifications++;
+    }
+    public void setLong(StateKey key, long value) {
+        Serializable slot = state.get(key);
+        if (slot instanceof LongSlot) ((LongSlot) slot).value = value;
+        else state.put(key, new LongSlot(value));
+        modifications++;
+    }
+    public void setDouble(StateKey key, double value) {
+        Serializable slot = state.get(key);
+        if (slot instanceof DoubleSlot) ((DoubleSlot) slot).value = value;
+        else state.put(key, new DoubleSlot(value));
+        modifications++;
+    }
+    public void setBoolean(StateKey key, boolean value) {
+        Serializable slot = state.get(key);
+        if (slot instanceof BooleanSlot) ((BooleanSlot) slot).value = value;
+        else state.put(key, new BooleanSlot(value));
+        modifications++;
     }
-
 
     /**
      * Remove a value with the specified key from this state
      * @param key the string key to save a value to
      */
     public void remove(String key) {
-        state.remove(key.toLowerCase());
+        remove(StateKey.of(key));
+    }
+    /**
+     * Remove a value with the specified key from this state
+     * @param key the key to remove the value for
+     */
+    public void remove(StateKey key) {
+        if (state.remove(key) != null)
+            modifications++;
     }
 
     /**
@@ -40,7 +146,22 @@ final public class StateObject implements Serializable {
      * @return the value as Serializable if present
      */
     public <X extends Serializable> Optional<X> get(String key) {
-        return Optional.ofNullable((X)state.get(key.toLowerCase()));
+        return get(StateKey.of(key));
+    }
+    /**
+     * Retrieve a value for a key not casted to it's actual type.
+     * @param key the key to read a value from
+     * @return the value as Serializable if present
+     */
+    public <X extends Serializable> Optional<X> get(StateKey key) {
+        return Optional.ofNullable((X)unwrap(state.get(key)));
+    }
+    /**
+     * @param key the key to check
+     * @return true if any value is set for this key
+     */
+    public boolean has(StateKey key) {
+        return state.containsKey(key);
     }
 
     public Optional<Boolean> getBoolean(String key) {
@@ -77,11 +198,76 @@ final public class StateObject implements Serializable {
         return getOfClass(key, BigDecimal.class);
     }
 
+    /**
+     * @param key the key to read a value from
+     * @param fallback the value to return if no int is set for this key
+     * @return the int for the key or the fallback
+     */
+    public int getInt(StateKey key, int fallback) {
+        Serializable slot = state.get(key);
+        return slot instanceof IntSlot ? ((IntSlot) slot).value : fallback;
+    }
+    /**
+     * @param key the key to read a value from
+     * @param fallback the value to return if no long is set for this key
+     * @return the long for the key or the fallback
+     */
+    public long getLong(StateKey key, long fallback) {
+        Serializable slot = state.get(key);
+        return slot instanceof LongSlot ? ((LongSlot) slot).value : fallback;
+    }
+    /**
+     * @param key the key to read a value from
+     * @param fallback the value to return if no double is set for this key
+     * @return the double for the key or the fallback
+     */
+    public double getDouble(StateKey key, double fallback) {
+        Serializable slot = state.get(key);
+        return slot instanceof DoubleSlot ? ((DoubleSlot) slot).value : fallback;
+    }
+    /**
+     * @param key the key to read a value from
+     * @param fallback the value to return if no boolean is set for this key
+     * @return the boolean for the key or the fallback
+     */
+    public boolean getBoolean(StateKey key, boolean fallback) {
+        Serializable slot = state.get(key);
+        return slot instanceof BooleanSlot ? ((BooleanSlot) slot).value : fallback;
+    }
+
+    /** @return the value boxed, if it's stored in a primitive slot */
+    private static Serializable unwrap(Serializable value) {
+        if (value instanceof IntSlot) return ((IntSlot) value).value;
+        if (value instanceof LongSlot) return ((LongSlot) value).value;
+        if (value instanceof DoubleSlot) return ((DoubleSlot) value).value;
+        if (value instanceof BooleanSlot) return ((BooleanSlot) value).value;
+        return value;
+    }
+
+    /**
+     * Values like lists, maps or custom objects can be changed without calling a setter
+     * on this state, so such changes are not reflected by the {@link #getModificationCount()}.
+     * @return true if any value might change without this state noticing
+     */
+    public boolean hasMutableValues() {
+        for (Serializable value : state.values())
+            if (!isImmutable(unwrap(value))) return true;
+        return false;
+    }
+    private static boolean isImmutable(Serializable value) {
+        return value instanceof String || value instanceof Boolean || value instanceof Number && (
+                value instanceof Integer || value instanceof Long || value instanceof Double ||
+                value instanceof Float || value instanceof Short || value instanceof Byte ||
+                value.getClass() == BigInteger.class || value.getClass() == BigDecimal.class
+            ) || value instanceof Character || value instanceof UUID || value instanceof Enum;
+    }
+
     /**
      * Removes all entries from the internal map
      */
     public void clear() {
         state.clear();
+        modifications++;
     }
 
     /**
@@ -91,7 +277,16 @@ final public class StateObject implements Serializable {
      * @throws ClassCastException probably
      */
     public <T> Optional<T> getOfClass(String key, Class<T> type) {
-        Object o = state.get(key.toLowerCase());
+        return getOfClass(StateKey.of(key), type);
+    }
+    /**
+     * Retrieve a value for a key and try to cast if to the specified type.
+     * @param key the key to read a value from
+     * @return the value as T
+     * @throws ClassCastException probably
+     */
+    public <T> Optional<T> getOfClass(StateKey key, Class<T> type) {
+        Object o = unwrap(state.get(key));
         if (type.isInstance(o)) {
             return Optional.of((T)o);
         } else {
@@ -99,6 +294,13 @@ final public class StateObject implements Serializable {
         }
     }
 
+    /** @return a copy of all entries with primitive slots converted to boxed values */
+    Map<StateKey, Serializable> entries() {
+        Map<StateKey, Serializable> entries = new LinkedHashMap<>(state.size());
+        state.forEach((key, value)->entries.put(key, unwrap(value)));
+        return entries;
+    }
+
     /**
      * Convert this StateObject into an JsonObject
      * @return this as Json
@@ -106,9 +308,9 @@ final public class StateObject implements Serializable {
     public JsonElement toJson() {
         JsonObject root = new JsonObject();
 
-        for (Map.Entry<String, Serializable> e : state.entrySet()) {
-            String key = e.getKey();
-            Serializable value = e.getValue();
+        for (Map.Entry<StateKey, Serializable> e : state.entrySet()) {
+            String key = e.getKey().getName();
+            Serializable value = unwrap(e.getValue());
             if (value instanceof BigInteger) {
                 root.addProperty("BI:"+key, (Number)value);
             } else if (value instanceof BigDecimal) {
@@ -135,6 +337,8 @@ final public class StateObject implements Serializable {
                 try {
                     ByteArrayOutputStream baos = new ByteArrayOutputStream();
                     ObjectOutputStream oos = new ObjectOutputStream(baos);
+                    oos.writeObject(value);
+                    oos.flush();
                     root.addProperty("O:" + key, new String(Base64.getEncoder().encode(baos.toByteArray())));
                 } catch (IOException except) {
                     throw new RuntimeException("Could not serialize State to Json", except);
@@ -175,6 +379,8 @@ final public class StateObject implements Serializable {
                 result.set(name, e.getValue().getAsBigDecimal());
             } else if (type.equals("S")) {
                 result.set(name, e.getValue().getAsString());
+            } else if (type.equals("U")) {
+                result.set(name, UUID.fromString(e.getValue().getAsString()));
             } else if (type.equals("O")) {
                 try {
                     byte[] buffer = Base64.getDecoder().decode(e.getValue().getAsString());
@@ -195,7 +401,8 @@ final public class StateObject implements Serializable {
      */
     public StateObject copy() {
         StateObject copy = new StateObject();
-        copy.state.putAll(state);
+        //primitive slots are mutable and can't be shared
+        state.forEach((key, value)->copy.set(key, unwrap(value)));
         return copy;
     }
 }
@@ -5,5 +5,7 @@ final public class StateProperties {
 
     /** The page a viewer is currently viewing. This value is used by player bound states. */
     public static final String PAGE = "page";
+    /** The same as {@link #PAGE}, but as pre-computed key */
+    public static final StateKey PAGE_KEY = StateKey.of(PAGE);
 
 }
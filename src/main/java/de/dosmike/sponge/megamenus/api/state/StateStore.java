@@ -0,0 +1,67 @@
+package de.dosmike.sponge.megamenus.api.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Storage for player bound states of persistent menus. States are loaded when a player
+ * joins or a player state is first requested and saved in batches from a background thread,
+ * so implementations have to be thread safe, but don't have to be fast.
+ * @see de.dosmike.sponge.megamenus.api.IMenu#persistPlayerStates(String)
+ */
+public interface StateStore {
+
+    /**
+     * @param menu the name of the persistent menu
+     * @param player the player to load the state for
+     * @return the stored state, or empty if nothing was stored yet
+     */
+    Optional<StateObject> load(String menu, UUID player) throws IOException;
+
+    /**
+     * @param menu the name of the persistent menu
+     * @param player the player the state belongs to
+     * @param state the state to store, this is a copy that is not modified anymore
+     */
+    void save(String menu, UUID player, StateObject state) throws IOException;
+
+    /**
+     * Saves multiple states at once, override if the storage benefits from batching.
+     * @param menu the name of the persistent menu
+     * @param states the states to store mapped by player
+     */
+    default void saveAll(String menu, Map<UUID, StateObject> states) throws IOException {
+        for (Map.Entry<UUID, StateObject> e : states.entrySet())
+            save(menu, e.getKey(), e.getValue());
+    }
+
+    /**
+     * Saves multiple states that are already encoded by the {@link StateCodec}. The default
+     * implementation decodes the states for {@link #saveAll}, override if the storage can
+     * keep the encoded states as they are.
+     * @param menu the name of the persistent menu
+     * @param states the encoded states to store mapped by player
+     */
+    default void saveAllEncoded(String menu, Map<UUID, byte[]> states) throws IOException {
+        Map<UUID, StateObject> decoded = new HashMap<>();
+        for (Map.Entry<UUID, byte[]> e : states.entrySet())
+            decoded.put(e.getKey(), StateCodec.read(new ByteArrayInputStream(e.getValue())));
+        saveAll(menu, decoded);
+    }
+
+    /**
+     * @param menu the name of the persistent menu
+     * @param player the player to remove the state for
+     */
+    void delete(String menu, UUID player) throws IOException;
+
+    /**
+     * @param menu the name of the persistent menu to remove all states for
+     */
+    void deleteAll(String menu) throws IOException;
+
+}
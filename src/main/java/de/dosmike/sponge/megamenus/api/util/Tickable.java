@@ -19,4 +19,16 @@ public interface Tickable {
      */
     boolean tick(int ms);
 
+    /**
+     * Allows the {@link de.dosmike.sponge.megamenus.impl.AnimationManager} to skip this object until
+     * it can actually change. Objects are only ticked in render cycles they are requested in,
+     * skipped time is passed with the next tick.<br>
+     * The default implementation asks to be ticked every render cycle it is requested in.
+     * @return the time in ms until the next tick can cause a change, 0 to be ticked every render
+     * cycle or a negative value if this object never changes due to time passing
+     */
+    default int getTickInterval() {
+        return 0;
+    }
+
 }
@@ -0,0 +1,18 @@
+package de.dosmike.sponge.megamenus.api.util;
+
+import de.dosmike.sponge.megamenus.api.elements.BackgroundProvider;
+import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
+import de.dosmike.sponge.megamenus.api.state.StateObject;
+
+/**
+ * Opt-in marker for {@link IElement}s and {@link BackgroundProvider}s whose output does not
+ * depend on the viewer or any {@link StateObject}. Renderer may then render such an object
+ * once and share the result with all viewers and keep it for later frames.<br>
+ * For elements this means getIcon, getName and getLore return the same for every player,
+ * changes to these values still have to invalidate the element.<br>
+ * For background providers this means drawAt only depends on the position. A lambda can
+ * be declared viewer independent with an intersection cast:
+ * <code>(BackgroundProvider &amp; ViewerIndependent) (pos, state, viewer)-&gt;icon</code>
+ */
+public interface ViewerIndependent {
+}
@@ -7,6 +7,7 @@ import de.dosmike.sponge.megamenus.api.IMenu;
 import de.dosmike.sponge.megamenus.api.MenuRenderer;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
 import de.dosmike.sponge.megamenus.api.listener.OnRenderStateListener;
+import de.dosmike.sponge.megamenus.impl.util.MenuMetrics;
 import de.dosmike.sponge.megamenus.impl.util.MenuUtil;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.scheduler.Task;
@@ -43,6 +44,14 @@ public abstract class AbstractMenuRenderer implements MenuRenderer {
     @Override
     public void invalidate() {
         valid = false;
+        //anything might have changed, all elements have to think again
+        thinkVersion = -1;
+    }
+
+    @Override
+    public void invalidate(IElement element) {
+        valid = false;
+        wakeElement(element);
     }
 
     @Override
@@ -52,6 +61,11 @@ public abstract class AbstractMenuRenderer implements MenuRenderer {
         }
     }
 
+    @Override
+    public boolean needsRevalidation() {
+        return !valid;
+    }
+
     /**
      * Refresh/redraw this menu for all current viewers
      */
@@ -102,6 +116,7 @@ public abstract class AbstractMenuRenderer implements MenuRenderer {
             parent = doparent?previous:null;
         });
         viewers.add(viewer);
+        RenderManager.trackViewer(viewer, this);
 
         if (renderListener != null)
             renderListener.opened(this, menu, viewer);
@@ -121,6 +136,7 @@ public abstract class AbstractMenuRenderer implements MenuRenderer {
             }).submit(MegaMenus.getInstance());
         } else {
             viewers.remove(viewer);
+            RenderManager.untrackViewer(viewer, this);
             MenuUtil.closeInventory(viewer);
         }
     }
@@ -128,6 +144,7 @@ public abstract class AbstractMenuRenderer implements MenuRenderer {
     public synchronized void closeSilent(Player viewer) {
         apiClose.add(viewer.getUniqueId());
         viewers.remove(viewer);
+        RenderManager.untrackViewer(viewer, this);
         if (renderListener != null && viewers.contains(viewer)) {
             renderListener.closed(this, menu, viewer);
         }
@@ -145,25 +162,104 @@ public abstract class AbstractMenuRenderer implements MenuRenderer {
         return apiClose.contains(player.getUniqueId());
     }
 
+    /**
+     * Renderer that only display a single page at a time return the page the viewer is on,
+     * so elements on other pages don't have to think for this viewer.
+     * @return the page currently displayed to the viewer or 0 if all pages are displayed
+     */
+    int getViewedPage(Player viewer) {
+        return 0;
+    }
+
+    /**
+     * Called when the background provider reported a change when ticked
+     */
+    void backgroundChanged() {
+    }
+
+    /** the displayed elements by the render cycle they have to think in next */
+    private ThinkSchedule thinkSchedule = new ThinkSchedule();
+    /** the viewers of every page when elements were last added to the think schedule */
+    private Map<Integer, List<Player>> thinkPageViewers = Collections.emptyMap();
+    /** the element version of the menu when elements were last added to the think schedule, -1 to add them again */
+    private int thinkVersion = -1;
+    private boolean thinking = false;
+
+    /**
+     * Lets the element think in the next render cycle, because its animations might have changed.
+     * Renderer overriding {@link #invalidate(IElement)} have to call this.
+     * @param element the element that changed
+     */
+    void wakeElement(IElement element) {
+        //elements are scheduled again anyways after they thought
+        if (!thinking) thinkSchedule.wake(element);
+    }
+
+    /**
+     * @return the version of the elements in the menu or -1 if unknown, so elements are always added again
+     */
+    private int getElementVersion() {
+        if (menu instanceof BaseMenuImpl) return ((BaseMenuImpl) menu).pages.version();
+        if (menu instanceof BoundMenuImpl) return ((BoundMenuImpl) menu).pages.version();
+        return -1;
+    }
+
     @Override
     public synchronized void think(AnimationManager animations) {
-        List<IElement> elements = new LinkedList<>();
-        for (int i = 1; i <= menu.pages(); i++) {
-            elements.addAll(menu.getPageElements(i));
+        long start = MenuMetrics.start();
+        long cycle = animations.getCycle();
+        //group viewers by page, elements on pages nobody is looking at don't think at all.
+        //their animations are caught up by the animation manager once they're shown again
+        Map<Integer, List<Player>> pageViewers = new HashMap<>();
+        for (Player p : viewers) {
+            int page = getViewedPage(p);
+            if (page < 0 || page > menu.pages()) continue;
+            pageViewers.computeIfAbsent(page, k->new LinkedList<>()).add(p);
+        }
+        int version = getElementVersion();
+        if (version < 0 || version != thinkVersion || !pageViewers.equals(thinkPageViewers)) {
+            //all displayed elements think now and get scheduled for when they're due again
+            thinkSchedule.clear();
+            for (Integer page : pageViewers.keySet()) {
+                if (page == 0) {
+                    for (int i = 1; i <= menu.pages(); i++)
+                        for (IElement e : MenuUtil.getRenderElements(menu, i))
+                            thinkSchedule.add(e, page, cycle);
+                } else {
+                    for (IElement e : MenuUtil.getRenderElements(menu, page))
+                        thinkSchedule.add(e, page, cycle);
+                }
+            }
+            thinkVersion = version;
+            thinkPageViewers = pageViewers;
         }
-        //now rendering can do anything to the menu itself without cme
         boolean changed=false;
-        for (IElement e : elements) {
-            for (Player p : viewers) {
-                changed |= e.think(animations, p);
+        //now rendering can do anything to the menu itself without cme
+        thinking = true;
+        try {
+            for (ThinkSchedule.Entry entry : thinkSchedule.drain(cycle)) {
+                long elementStart = MenuMetrics.start();
+                long next = Long.MAX_VALUE;
+                for (Player p : pageViewers.get(entry.page)) {
+                    if (entry.element.think(animations, p))
+                        invalidate(entry.element);
+                    next = Math.min(next, entry.element.getNextThink(animations, p));
+                }
+                thinkSchedule.schedule(entry, next);
+                MenuMetrics.record(MenuMetrics.THINK, entry.element, elementStart);
             }
+        } finally {
+            thinking = false;
+        }
+        if (menu.getBackground() != null && animations.singleTick(menu.getBackground())) {
+            backgroundChanged();
+            changed = true;
         }
-        if (menu.getBackground() != null)
-            changed |= animations.singleTick(menu.getBackground());
         if (renderListener != null)
             changed |= renderListener.tick(animations.getDeltaTime(), this, menu);
         if (changed)
             valid = false;
+        MenuMetrics.record(MenuMetrics.THINK, menu, start);
     }
 
     private OnRenderStateListener renderListener = null;
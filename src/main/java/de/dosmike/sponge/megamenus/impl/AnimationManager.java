@@ -3,32 +3,130 @@ package de.dosmike.sponge.megamenus.impl;
 import de.dosmike.sponge.megamenus.api.elements.IIcon;
 import de.dosmike.sponge.megamenus.api.util.Tickable;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Class to manage animations of {@link IIcon}s or more specifically
- * all {@link Tickable} objects.
+ * all {@link Tickable} objects.<br>
+ * Every object remembers when it's due next, as reported by {@link Tickable#getTickInterval()}.
+ * Objects are only ticked when they are requested and due, all other requests just report no
+ * change. Objects that never change are not tracked at all.<br>
+ * Renderer only request objects in the cycle reported by {@link #getDueCycle(Tickable)}.
  */
 final public class AnimationManager {
 
-    private Set<Tickable> ticked = new HashSet<>();
+    /** the expected time between render cycles in ms */
+    private static final int CYCLE_TIME = 50;
+    /** objects not requested for this many cycles are dropped */
+    private static final int STALE_CYCLES = 100;
+
+    private static final class Schedule {
+        final Tickable object;
+        /** time in ms this object was last ticked */
+        long lastTicked;
+        /** time in ms this object is due again */
+        long dueAt;
+        /** the last cycle this object was ticked */
+        long tickedCycle;
+        /** the last cycle the tick reported a change */
+        long changedCycle = -1L;
+        /** the last cycle this object was requested */
+        long seenCycle;
+        Schedule(Tickable object) {
+            this.object = object;
+        }
+    }
+
+    private Map<Tickable, Schedule> schedules = new HashMap<>();
+    /** objects that stopped changing this cycle, dropped once the cycle is finished */
+    private List<Tickable> stopped = new ArrayList<>();
+    private long cycle = 0L;
     private long lastTick = System.currentTimeMillis();
     private Integer deltaTime = null;
+
     /**
-     * @return true if the {@link Tickable} was not already ticked and
-     * reported a change in state
+     * Ticks the object once per render cycle, if it's due. Subsequent calls within the same
+     * cycle repeat the result, so every user of a shared object is notified.
+     * @return true if the {@link Tickable} reported a change in state during this cycle
      */
     public boolean singleTick(Tickable object) {
-        return ticked.add(object) && object.tick(getDeltaTime());
+        Schedule schedule = schedules.get(object);
+        if (schedule == null) {
+            //static objects are not worth tracking
+            if (object.getTickInterval() < 0) return false;
+            schedule = new Schedule(object);
+            schedules.put(object, schedule);
+            tick(schedule, getDeltaTime());
+        } else if (schedule.tickedCycle != cycle) {
+            long now = System.currentTimeMillis();
+            //tick in the cycle closest to the due time
+            if (schedule.dueAt - now < CYCLE_TIME / 2)
+                tick(schedule, (int) (now - schedule.lastTicked));
+        }
+        schedule.seenCycle = cycle;
+        return schedule.changedCycle == cycle;
+    }
+    /**
+     * Renderer use this to skip elements until one of their {@link Tickable}s is due again.
+     * @param object the object to check
+     * @return the render cycle the object has to be requested in next, or Long.MAX_VALUE if it never changes
+     */
+    public long getDueCycle(Tickable object) {
+        Schedule schedule = schedules.get(object);
+        long remaining;
+        if (schedule != null) {
+            if (schedule.dueAt == Long.MAX_VALUE) return Long.MAX_VALUE;
+            remaining = schedule.dueAt - System.currentTimeMillis();
+        } else {
+            remaining = object.getTickInterval();
+            if (remaining < 0) return Long.MAX_VALUE;
+        }
+        //singleTick ticks up to half a cycle early
+        return cycle + Math.max(1L, (remaining + CYCLE_TIME / 2) / CYCLE_TIME);
+    }
+    /**
+     * @return the number of the current render cycle
+     */
+    public long getCycle() {
+        return cycle;
+    }
+    private void tick(Schedule schedule, int delta) {
+        schedule.lastTicked = System.currentTimeMillis();
+        schedule.tickedCycle = cycle;
+        if (schedule.object.tick(delta))
+            schedule.changedCycle = cycle;
+        int interval = schedule.object.getTickInterval();
+        if (interval < 0) {
+            //stopped changing, will be checked again when requested in a later cycle
+            schedule.dueAt = Long.MAX_VALUE;
+            stopped.add(schedule.object);
+            return;
+        }
+        schedule.dueAt = schedule.lastTicked + interval;
     }
     /**
      * This method has to be called after one render cycle in order
      * to free all {@link Tickable} object, in order for them to be
-     * tickable again in the next cycle
+     * tickable again in the next cycle.
      */
     public void finishTick() {
-        ticked.clear();
+        resetTimer();
+        cycle++;
+        stopped.forEach(schedules::remove);
+        stopped.clear();
+        if (cycle % STALE_CYCLES == 0) {
+            //objects are only requested when they are due, so only drop them when they are overdue for long
+            long staleAt = lastTick - STALE_CYCLES * CYCLE_TIME;
+            schedules.values().removeIf(schedule -> cycle - schedule.seenCycle > STALE_CYCLES && schedule.dueAt < staleAt);
+        }
+    }
+    /**
+     * Starts measuring the delta time from now, without finishing the render cycle
+     */
+    public void resetTimer() {
         lastTick = System.currentTimeMillis();
         deltaTime = null;
     }
@@ -7,7 +7,6 @@ import de.dosmike.sponge.megamenus.api.elements.BackgroundProvider;
 import de.dosmike.sponge.megamenus.api.elements.PositionProvider;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
 import de.dosmike.sponge.megamenus.api.state.StateObject;
-import de.dosmike.sponge.megamenus.api.state.StateProperties;
 import de.dosmike.sponge.megamenus.exception.ObjectBuilderException;
 import de.dosmike.sponge.megamenus.impl.elements.IElementImpl;
 import org.spongepowered.api.item.inventory.property.SlotPos;
@@ -51,22 +50,21 @@ public class BaseMenuImpl implements IMenu {
 
     @Override
     public void setPositionProvider(PositionProvider provider) {
-        lastPutPosition.clear();
+        pages.resetPositionTracking();
         this.positionProvider = provider;
     }
 
     //region menu elements
-    protected int pagecount = 1;
-    protected Map<Integer, List<IElement>> pageelements = new HashMap<>();
+    protected MenuPages pages = new MenuPages();
 
     @Override
     public int pages() {
-        return pagecount;
+        return pages.count();
     }
 
     @Override
     public Collection<IElement> getPageElements(int page) {
-        return pageelements.getOrDefault(page, new LinkedList<>());
+        return pages.getElements(page);
     }
 
     @Override
@@ -88,29 +86,27 @@ public class BaseMenuImpl implements IMenu {
         this.putOnPage(page, elements);
     }
 
-    protected Map<Integer, SlotPos> lastPutPosition = new HashMap<>();
     /**
      * internal shared implementation to put elements on a page. check must already have happened
      * @param page the target page
      * @param element the elements to put on the page
      */
     private void putOnPage(Integer page, Collection<? extends IElement> element) {
-        if (page > pagecount) pagecount = page;
-        List<IElement> pe = pageelements.getOrDefault(page, new LinkedList<>());
-        for (IElement elem : element)
+        MenuPages.Page pe = pages.getOrCreate(page);
+        for (IElement elem : element) {
             if (elem instanceof IElementImpl) {
                 //bind the element to this menu
                 ((IElementImpl) elem).setParent(this);
                 //create a position, if missing
                 SlotPos pos = elem.getPosition();
                 if (pos == null) {
-                    pos = positionProvider.next(lastPutPosition.get(page));
+                    pos = positionProvider.next(pe.lastPutPosition);
                     elem.setPosition(pos);
                 }
-                lastPutPosition.put(page, pos);
+                pe.lastPutPosition = pos;
             }
-        pe.addAll(element);
-        pageelements.put(page, pe);
+            pages.add(pe, elem);
+        }
     }
 
     @Override
@@ -119,58 +115,68 @@ public class BaseMenuImpl implements IMenu {
     }
     @Override
     public void remove(int page, SlotPos pos) {
-        List<IElement> pe = pageelements.getOrDefault(page, new LinkedList<>());
-        pe.removeIf(element-> {
+        MenuPages.Page pe = pages.get(page);
+        if (pe == null) return;
+        for (IElement element : pe.getElementsAt(pos))
             if (pos.equals(element.getPosition())) {
-                if (element instanceof IElementImpl)
-                    ((IElementImpl)element).setParent(null); //unbind the element from this menu
-                return true;
-            } else return false;
-        });
-        pageelements.put(page, pe);
+                pages.remove(pe, element);
+                unbind(element);
+            }
     }
     @Override
     public void removePage(int page) {
-        clearPage(page);
-        for (int i = page+1; i <= pagecount; i++) { //pull pages down
-            List<IElement> pre = pageelements.remove(i);
-            if (pre != null) pageelements.put(i-1, pre);
-        }
-        //adjust paginations
-        if (page > 1) {
-            if (page == pagecount) {
-                pagecount--;
-            }
-            for (Map.Entry<UUID, StateObject> e : playerBoundStates.entrySet()) {
-                Optional<Integer> viewerpage = e.getValue().getInt(StateProperties.PAGE);
-                if (viewerpage.isPresent() && viewerpage.get() >= page) {
-                    e.getValue().set(StateProperties.PAGE, viewerpage.get() - 1);
-                }
-            }
-        }
-        //fix position tracking
-        List<Integer> keys = new LinkedList<>(lastPutPosition.keySet());
-        keys.removeIf(p->p<=page);
-        Collections.sort(keys);
-        for (Integer k : keys) {
-            //ok, as long as k goes up, since we move elements down
-            SlotPos pre = lastPutPosition.remove(k);
-            if (pre != null) lastPutPosition.put(k-1, pre);
-        }
+        pages.removePage(page).forEach(this::unbind);
+        playerBoundStates.pageRemoved(page);
     }
     @Override
     public void clearPage(int page) {
-        Optional.ofNullable(pageelements.remove(page)) //if a page could be removed here
-                .ifPresent(list->list.forEach(element->{ //unbind all element in the page from this menu
-                    if (element instanceof IElementImpl)
-                        ((IElementImpl)element).setParent(null);
-                }));
+        //unbind all element in the page from this menu
+        pages.clearPage(page).forEach(this::unbind);
+    }
+    private void unbind(IElement element) {
+        if (element instanceof IElementImpl) {
+            //bound menus still display the element, they get their own copy before it loses this menu
+            for (BoundMenuImpl bound : boundMenus)
+                bound.materialize(element);
+            ((IElementImpl)element).setParent(null);
+        }
+    }
+
+    /**
+     * Uses the occupancy grid of the page to find all elements at the position
+     * @param page the page to search
+     * @param pos the x and y coordinates to search for elements
+     * @return an immutable set of all elements occupying pos on the page
+     */
+    public Set<IElement> getElementsAt(int page, SlotPos pos) {
+        return pages.getElementsAt(page, pos);
+    }
+
+    /**
+     * Called by elements on this menu after their position changed, in order to
+     * update the occupancy grid for the page holding the element.
+     * @param element the element that moved
+     */
+    public void updatePosition(IElement element) {
+        pages.updatePosition(element);
+        for (BoundMenuImpl bound : boundMenus)
+            bound.updatePosition(element);
+    }
+
+    /** bound menus sharing elements with this menu, weak to not keep closed bound menus alive */
+    private Set<BoundMenuImpl> boundMenus = Collections.newSetFromMap(new WeakHashMap<>());
+    /**
+     * Bound menus share elements with their base menu and need to know when those move.
+     * @param bound the bound menu created from this menu
+     */
+    void registerBoundMenu(BoundMenuImpl bound) {
+        boundMenus.add(bound);
     }
     //endregion
 
     //region states
     protected StateObject state = new StateObject();
-    protected Map<UUID, StateObject> playerBoundStates = new HashMap<>();
+    protected PlayerStates playerBoundStates = new PlayerStates();
 
     @Override
     public StateObject getState() {
@@ -178,8 +184,6 @@ public class BaseMenuImpl implements IMenu {
     }
     @Override
     public StateObject getPlayerState(UUID playerID) {
-        if (!playerBoundStates.containsKey(playerID))
-            playerBoundStates.put(playerID, new StateObject());
         return playerBoundStates.get(playerID);
     }
     @Override
@@ -212,6 +216,10 @@ public class BaseMenuImpl implements IMenu {
     public void clearPlayerStateMap() {
         playerBoundStates.clear();
     }
+    @Override
+    public void persistPlayerStates(String name) {
+        playerBoundStates.persist(name);
+    }
     //endregion
 
     //region rendering
@@ -254,7 +262,7 @@ public class BaseMenuImpl implements IMenu {
         copy.setTitle(getTitle());
         copy.setState(state.copy());
         copy.playerBoundStates.putAll(getPlayerStateMapCopy());
-        for (int p=1;p<=pagecount;p++)
+        for (int p=1;p<=pages();p++)
             for (IElement e : getPageElements(p))
                 copy.add(p,e.copy());
         return copy;
@@ -2,6 +2,7 @@ package de.dosmike.sponge.megamenus.impl;
 
 import de.dosmike.sponge.megamenus.api.IMenu;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
+import de.dosmike.sponge.megamenus.impl.util.MenuUtil;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.item.inventory.property.SlotPos;
 import org.spongepowered.api.text.BookView;
@@ -29,7 +30,7 @@ public class BookRenderer extends TextMenuRenderer {
 
         for (int i=1; i<=menu.pages(); i++) {
             Text.Builder page = Text.builder();
-            List<IElement> elements = new LinkedList<>(menu.getPageElements(i));
+            List<IElement> elements = new LinkedList<>(MenuUtil.getRenderElements(menu, i));
             elements.sort((e1, e2) -> {
                 SlotPos p1 = e1.getPosition(), p2 = e2.getPosition();
                 int c = Integer.compare(p1.getY(), p2.getY());
@@ -7,20 +7,23 @@ import de.dosmike.sponge.megamenus.api.elements.BackgroundProvider;
 import de.dosmike.sponge.megamenus.api.elements.PositionProvider;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
 import de.dosmike.sponge.megamenus.api.state.StateObject;
-import de.dosmike.sponge.megamenus.api.state.StateProperties;
 import de.dosmike.sponge.megamenus.exception.ObjectBuilderException;
 import de.dosmike.sponge.megamenus.impl.elements.IElementImpl;
 import org.spongepowered.api.item.inventory.property.SlotPos;
 import org.spongepowered.api.text.Text;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * A bound menu implementation allows for menu {@link IElement} to not only render differently
  * for each viewer, but also to store different values for each element by creating functional
- * duplicates. (Every element gets copied).<br>
- * Changes to the {@link BoundMenuImpl} IElements are <b>NOT</b> reflected onto the {@link BaseMenuImpl} and vice versa.<br>
+ * duplicates.<br>
+ * Elements are shared with the {@link BaseMenuImpl} until a viewer interacts with them or they are
+ * retrieved through {@link #getPageElements(int)} or {@link #getElementsAt(int, SlotPos)}. Only then
+ * the element is copied for this bound menu (copy on write), so memory scales with the elements
+ * actually changed.<br>
+ * Changes to copied {@link BoundMenuImpl} IElements are <b>NOT</b> reflected onto the {@link BaseMenuImpl} and vice versa.
+ * Changes to elements in the BaseMenuImpl are visible in bound menus as long as the element was not copied.<br>
  * The menu {@link StateObject}s are still shared with the BaseMenuImpl.
  * @see IMenu
  */
@@ -29,21 +32,52 @@ public class BoundMenuImpl implements IMenu {
     private BaseMenuImpl menu;
     public BoundMenuImpl(BaseMenuImpl baseMenu) {
         this.menu = baseMenu;
-        pagecount = menu.pagecount;
-        menu.pageelements.forEach((key, value) ->
-                pageelements.put(key, value.stream()
-                        .map(o -> {
-                            IElement copy = o.copy();
-                            // re-bind the copied element to this menu
-                            if (copy instanceof IElementImpl) {
-                                ((IElementImpl) copy).setParent(null);
-                                ((IElementImpl) copy).setParent(this);
-                            }
-                            return copy;
-                        })
-                        .collect(Collectors.toCollection(LinkedList::new))
-                )
-        );
+        for (int page = 1; page <= menu.pages(); page++) {
+            MenuPages.Page pe = pages.getOrCreate(page);
+            for (IElement o : menu.getPageElements(page)) {
+                // share base elements, but we can't tell when custom elements change
+                pages.add(pe, o instanceof IElementImpl ? o : o.copy());
+            }
+        }
+        menu.registerBoundMenu(this);
+    }
+
+    /**
+     * Replaces the element shared with the base menu by a copy owned by this bound menu.
+     * This has to happen before an element changes, e.g. because a viewer interacts with it.
+     * @param element the element about to change
+     * @return the element owned by this menu that should receive the change
+     */
+    public IElement materialize(IElement element) {
+        IElement copy = materialized.get(element);
+        if (copy != null) return copy; //text renderer might still reference the shared element
+        if (!isShared(element)) return element;
+        MenuPages.Page pe = pages.pageOf(element);
+        copy = element.copy();
+        // re-bind the copied element to this menu
+        ((IElementImpl) copy).setParent(null);
+        ((IElementImpl) copy).setParent(this);
+        pages.replace(pe, element, copy);
+        materialized.put(element, copy);
+        return copy;
+    }
+    /** maps shared elements to the copies that replaced them */
+    private Map<IElement, IElement> materialized = new HashMap<>();
+
+    /**
+     * @param element the element to check
+     * @return true if the element is displayed by this menu but owned by the base menu
+     */
+    public boolean isShared(IElement element) {
+        return element instanceof IElementImpl && element.getParent() != this && contains(element);
+    }
+
+    /**
+     * @param element the element to look for
+     * @return true if the element is displayed on any page of this menu
+     */
+    public boolean contains(IElement element) {
+        return pages.pageOf(element) != null;
     }
 
     @Override
@@ -72,17 +106,33 @@ public class BoundMenuImpl implements IMenu {
     }
 
     //region menu elements
-    protected int pagecount = 1;
-    protected Map<Integer, List<IElement>> pageelements = new HashMap<>();
+    protected MenuPages pages = new MenuPages();
 
     @Override
     public int pages() {
-        return pagecount;
+        return pages.count();
     }
 
+    /**
+     * All elements on the page are copied from the base menu before they are returned, so changes
+     * to them only affect this bound menu.
+     * @see #peekPageElements(int)
+     */
     @Override
     public Collection<IElement> getPageElements(int page) {
-        return pageelements.getOrDefault(page, new LinkedList<>());
+        for (IElement element : new ArrayList<>(pages.getElements(page)))
+            materialize(element);
+        return pages.getElements(page);
+    }
+
+    /**
+     * Returns the elements on the page as they are displayed, without copying elements
+     * shared with the base menu. Elements have to be {@link #materialize}d before they change.
+     * @param page the page to get elements for
+     * @return a read-only view of all elements on the page
+     */
+    public Collection<IElement> peekPageElements(int page) {
+        return pages.getElements(page);
     }
 
     @Override
@@ -104,29 +154,27 @@ public class BoundMenuImpl implements IMenu {
         this.putOnPage(page, elements);
     }
 
-    protected Map<Integer, SlotPos> lastPutPosition = new HashMap<>();
     /**
      * internal shared implementation to put elements on a page. check must already have happened
      * @param page the target page
      * @param element the elements to put on the page
      */
     private void putOnPage(Integer page, Collection<? extends IElement> element) {
-        if (page > pagecount) pagecount = page;
-        List<IElement> pe = pageelements.getOrDefault(page, new LinkedList<>());
-        for (IElement elem : element)
+        MenuPages.Page pe = pages.getOrCreate(page);
+        for (IElement elem : element) {
             if (elem instanceof IElementImpl) {
                 //bind the element to this menu
                 ((IElementImpl) elem).setParent(this);
                 //create a position, if missing
                 SlotPos pos = elem.getPosition();
                 if (pos == null) {
-                    pos = menu.positionProvider.next(lastPutPosition.get(page));
+                    pos = menu.positionProvider.next(pe.lastPutPosition);
                     elem.setPosition(pos);
                 }
-                lastPutPosition.put(page, pos);
+                pe.lastPutPosition = pos;
             }
-        pe.addAll(element);
-        pageelements.put(page, pe);
+            pages.add(pe, elem);
+        }
     }
 
     @Override
@@ -135,52 +183,63 @@ public class BoundMenuImpl implements IMenu {
     }
     @Override
     public void remove(int page, SlotPos pos) {
-        List<IElement> pe = pageelements.getOrDefault(page, new LinkedList<>());
-        pe.removeIf(element-> {
+        MenuPages.Page pe = pages.get(page);
+        if (pe == null) return;
+        for (IElement element : pe.getElementsAt(pos))
             if (pos.equals(element.getPosition())) {
-                if (element instanceof IElementImpl)
-                    ((IElementImpl)element).setParent(null); //unbind the element from this menu
-                return true;
-            } else return false;
-        });
-        pageelements.put(page, pe);
+                pages.remove(pe, element);
+                unbind(element);
+            }
     }
     @Override
     public void removePage(int page) {
-        clearPage(page);
-        for (int i = page+1; i <= pagecount; i++) { //pull pages down
-            List<IElement> pre = pageelements.remove(i);
-            if (pre != null) pageelements.put(i-1, pre);
-        }
-        //adjust paginations
-        if (page > 1) {
-            if (page == pagecount) {
-                pagecount--;
-            }
-            for (Map.Entry<UUID, StateObject> e : menu.playerBoundStates.entrySet()) {
-                Optional<Integer> viewerpage = e.getValue().getInt(StateProperties.PAGE);
-                if (viewerpage.isPresent() && viewerpage.get() >= page) {
-                    e.getValue().set(StateProperties.PAGE, viewerpage.get() - 1);
-                }
-            }
-        }
-        //fix position tracking
-        List<Integer> keys = new LinkedList<>(lastPutPosition.keySet());
-        keys.removeIf(p->p<=page);
-        Collections.sort(keys);
-        for (Integer k : keys) {
-            //ok, as long as k goes up, since we move elements down
-            SlotPos pre = lastPutPosition.remove(k);
-            if (pre != null) lastPutPosition.put(k-1, pre);
-        }
+        pages.removePage(page).forEach(this::unbind);
+        menu.playerBoundStates.pageRemoved(page);
     }
     @Override
     public void clearPage(int page) {
-        Optional.ofNullable(pageelements.remove(page)) //if a page could be removed here
-                .ifPresent(list->list.forEach(element->{ //unbind all element in the page from this menu
-                    if (element instanceof IElementImpl)
-                        ((IElementImpl)element).setParent(null);
-                }));
+        //unbind all element in the page from this menu
+        pages.clearPage(page).forEach(this::unbind);
+    }
+    private void unbind(IElement element) {
+        //shared elements are still bound to the base menu
+        if (element instanceof IElementImpl && element.getParent() == this)
+            ((IElementImpl)element).setParent(null);
+    }
+
+    /**
+     * Uses the occupancy grid of the page to find all elements at the position.
+     * The elements are copied from the base menu before they are returned, so changes
+     * to them only affect this bound menu.
+     * @param page the page to search
+     * @param pos the x and y coordinates to search for elements
+     * @return an immutable set of all elements occupying pos on the page
+     * @see #peekElementsAt(int, SlotPos)
+     */
+    public Set<IElement> getElementsAt(int page, SlotPos pos) {
+        for (IElement element : new ArrayList<>(pages.getElementsAt(page, pos)))
+            materialize(element);
+        return pages.getElementsAt(page, pos);
+    }
+
+    /**
+     * Uses the occupancy grid of the page to find all elements at the position, without copying
+     * elements shared with the base menu. Elements have to be {@link #materialize}d before they change.
+     * @param page the page to search
+     * @param pos the x and y coordinates to search for elements
+     * @return an immutable set of all elements occupying pos on the page
+     */
+    public Set<IElement> peekElementsAt(int page, SlotPos pos) {
+        return pages.getElementsAt(page, pos);
+    }
+
+    /**
+     * Called by elements on this menu after their position changed, in order to
+     * update the occupancy grid for the page holding the element.
+     * @param element the element that moved
+     */
+    public void updatePosition(IElement element) {
+        pages.updatePosition(element);
     }
     //endregion
 
@@ -229,6 +288,10 @@ public class BoundMenuImpl implements IMenu {
     public void clearPlayerStateMap() {
         menu.clearPlayerStateMap();
     }
+    @Override
+    public void persistPlayerStates(String name) {
+        menu.persistPlayerStates(name);
+    }
     //endregion
 
     //region rendering
@@ -2,6 +2,7 @@ package de.dosmike.sponge.megamenus.impl;
 
 import de.dosmike.sponge.megamenus.api.IMenu;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
+import de.dosmike.sponge.megamenus.impl.util.MenuUtil;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.item.inventory.property.SlotPos;
 import org.spongepowered.api.service.pagination.PaginationList;
@@ -34,7 +35,7 @@ public class ChatRenderer extends TextMenuRenderer {
         List<Text> contents = new LinkedList<>();
         for (int i=1; i<=getMenu().pages(); i++) {
             int elementsInPage = 0;
-            List<IElement> elements = new LinkedList<>(menu.getPageElements(i));
+            List<IElement> elements = new LinkedList<>(MenuUtil.getRenderElements(menu, i));
             elements.sort((e1, e2) -> {
                 SlotPos p1 = e1.getPosition(), p2 = e2.getPosition();
                 int c = Integer.compare(p1.getY(), p2.getY());
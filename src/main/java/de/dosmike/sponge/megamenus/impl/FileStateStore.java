@@ -0,0 +1,90 @@
+package de.dosmike.sponge.megamenus.impl;
+
+import de.dosmike.sponge.megamenus.api.state.StateCodec;
+import de.dosmike.sponge.megamenus.api.state.StateObject;
+import de.dosmike.sponge.megamenus.api.state.StateStore;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Default {@link StateStore} keeping one file per menu and player in the format
+ * written by {@link StateCodec}: &lt;root&gt;/&lt;menu&gt;/&lt;player uuid&gt;.state<br>
+ * Menu names are percent encoded, only lower case letters, digits, '_' and '-' are kept.
+ * This way names can't escape the root and different names never share a directory,
+ * even on case insensitive file systems.
+ */
+public class FileStateStore implements StateStore {
+
+    private final Path root;
+
+    public FileStateStore(Path root) {
+        this.root = root;
+    }
+
+    private Path directory(String menu) {
+        StringBuilder encoded = new StringBuilder(menu.length());
+        for (byte b : menu.getBytes(StandardCharsets.UTF_8)) {
+            if ((b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '_' || b == '-')
+                encoded.append((char) b);
+            else
+                encoded.append(String.format("%%%02X", b & 0xFF));
+        }
+        return root.resolve(encoded.toString());
+    }
+    private Path file(String menu, UUID player) {
+        return directory(menu).resolve(player.toString() + ".state");
+    }
+
+    @Override
+    public Optional<StateObject> load(String menu, UUID player) throws IOException {
+        Path file = file(menu, player);
+        if (!Files.isRegularFile(file)) return Optional.empty();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return Optional.of(StateCodec.read(in));
+        }
+    }
+
+    @Override
+    public void save(String menu, UUID player, StateObject state) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        StateCodec.write(state, data);
+        write(file(menu, player), data.toByteArray());
+    }
+
+    /** the files already hold the encoded states, so they are written as they are */
+    @Override
+    public void saveAllEncoded(String menu, Map<UUID, byte[]> states) throws IOException {
+        for (Map.Entry<UUID, byte[]> e : states.entrySet())
+            write(file(menu, e.getKey()), e.getValue());
+    }
+
+    private void write(Path file, byte[] data) throws IOException {
+        Files.createDirectories(file.getParent());
+        //write to a temporary file first, so a crash can't leave a half written state
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, data);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void delete(String menu, UUID player) throws IOException {
+        Files.deleteIfExists(file(menu, player));
+    }
+
+    @Override
+    public void deleteAll(String menu) throws IOException {
+        Path directory = directory(menu);
+        if (!Files.isDirectory(directory)) return;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.deleteIfExists(file);
+        }
+    }
+
+}
@@ -1,6 +1,5 @@
 package de.dosmike.sponge.megamenus.impl;
 
-import de.dosmike.sponge.megamenus.AntiGlitch;
 import de.dosmike.sponge.megamenus.MegaMenus;
 import de.dosmike.sponge.megamenus.api.IMenu;
 import de.dosmike.sponge.megamenus.api.MenuRenderer;
@@ -11,30 +10,33 @@ import de.dosmike.sponge.megamenus.api.elements.concepts.IClickable;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IInventory;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IPressable;
+import de.dosmike.sponge.megamenus.api.state.StateObject;
 import de.dosmike.sponge.megamenus.api.state.StateProperties;
+import de.dosmike.sponge.megamenus.api.util.ViewerIndependent;
+import de.dosmike.sponge.megamenus.impl.elements.IElementImpl;
+import de.dosmike.sponge.megamenus.impl.util.IconStackCache;
+import de.dosmike.sponge.megamenus.impl.util.MenuMetrics;
 import de.dosmike.sponge.megamenus.impl.util.MenuUtil;
 import de.dosmike.sponge.megamenus.impl.util.SlotChange;
-import org.spongepowered.api.data.key.Keys;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.item.inventory.ClickInventoryEvent;
 import org.spongepowered.api.event.item.inventory.InteractInventoryEvent;
+import org.spongepowered.api.item.ItemTypes;
+import org.spongepowered.api.item.inventory.Container;
 import org.spongepowered.api.item.inventory.Inventory;
 import org.spongepowered.api.item.inventory.InventoryArchetypes;
-import org.spongepowered.api.item.inventory.ItemStack;
 import org.spongepowered.api.item.inventory.ItemStackSnapshot;
 import org.spongepowered.api.item.inventory.property.InventoryDimension;
 import org.spongepowered.api.item.inventory.property.InventoryTitle;
 import org.spongepowered.api.item.inventory.property.SlotIndex;
 import org.spongepowered.api.item.inventory.property.SlotPos;
+import org.spongepowered.api.item.inventory.transaction.SlotTransaction;
 import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.scheduler.Task;
-import org.spongepowered.api.text.Text;
 
 import java.awt.event.MouseEvent;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -85,13 +87,7 @@ public class GuiRenderer extends AbstractMenuRenderer {
                 RenderManager.getRenderFor(viewer)
                         .filter(r->r instanceof GuiRenderer)
                         .map(r->(GuiRenderer)r)
-                        .ifPresent(render->{
-                    ClickInventoryEvent ice = (ClickInventoryEvent) event;
-                    ice.getTransactions().stream()
-                            .map(SlotChange::from)
-                            .filter(s -> s.getSlot()!=null && s.getSlot().getY() < render.pageHeight)
-                            .forEach(s -> render.interactHandler(viewer, s, ice));
-                });
+                        .ifPresent(render->render.interactHandler(viewer, (ClickInventoryEvent) event));
             }
         };
 
@@ -105,20 +101,78 @@ public class GuiRenderer extends AbstractMenuRenderer {
         }
     };
 
-    private synchronized void interactHandler(Player viewer, SlotChange slot, ClickInventoryEvent event) {
-        GuiRenderer render = (GuiRenderer)RenderManager.getRenderFor(viewer).orElse(null);
-        if (render == null) return;
-        //shadow local menu, because interaction handler should always use the menu from the open render
-        IMenu menu = render.getMenu();
+    /**
+     * What click handling needs to know about an event type, resolved once per event class
+     * instead of checking the event for every transaction and element
+     */
+    private static final class ClickType {
+        final boolean numberPress, drop, dropOutside, dropFull, middle, shift;
+        /** the mouse button as {@link MouseEvent} constant */
+        final int button;
+        ClickType(Class<?> type) {
+            numberPress = ClickInventoryEvent.NumberPress.class.isAssignableFrom(type);
+            drop = ClickInventoryEvent.Drop.class.isAssignableFrom(type);
+            dropOutside = ClickInventoryEvent.Drop.Outside.class.isAssignableFrom(type);
+            dropFull = ClickInventoryEvent.Drop.Full.class.isAssignableFrom(type);
+            middle = ClickInventoryEvent.Middle.class.isAssignableFrom(type);
+            shift = ClickInventoryEvent.Shift.class.isAssignableFrom(type);
+            if (ClickInventoryEvent.Primary.class.isAssignableFrom(type)) button = MouseEvent.BUTTON1;
+            else if (ClickInventoryEvent.Secondary.class.isAssignableFrom(type)) button = MouseEvent.BUTTON2;
+            else if (middle) button = MouseEvent.BUTTON3;
+            else button = MouseEvent.NOBUTTON;
+        }
+    }
+    /**
+     * The interaction interfaces an element class implements, resolved once per element class
+     */
+    private static final class ElementType {
+        final boolean pressable, clickable, inventory;
+        ElementType(Class<?> type) {
+            pressable = IPressable.class.isAssignableFrom(type);
+            clickable = IClickable.class.isAssignableFrom(type);
+            inventory = IInventory.class.isAssignableFrom(type);
+        }
+    }
+    private static final Map<Class<?>, ClickType> clickTypes = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ElementType> elementTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Handles all transactions of the click event that are within the menu in one pass
+     */
+    private synchronized void interactHandler(Player viewer, ClickInventoryEvent event) {
+        long start = MenuMetrics.start();
+        try {
+            List<SlotChange> changes = new LinkedList<>();
+            for (SlotTransaction transaction : event.getTransactions()) {
+                SlotChange change = SlotChange.from(transaction);
+                if (change.getSlot() != null && change.getSlot().getY() < pageHeight)
+                    changes.add(change);
+            }
+            if (changes.isEmpty()) return;
+            GuiRenderer render = (GuiRenderer)RenderManager.getRenderFor(viewer).orElse(null);
+            if (render == null) return;
+            //the viewer is waiting for a response, redraw before other menus
+            RenderManager.prioritize(render);
+            //shadow local menu, because interaction handler should always use the menu from the open render
+            IMenu menu = render.getMenu();
+            StateObject viewerState = menu.getPlayerState(viewer.getUniqueId());
+            int page = viewerState.getInt(StateProperties.PAGE_KEY, 1);
+            ClickType click = clickTypes.computeIfAbsent(event.getClass(), ClickType::new);
+            for (SlotChange slot : changes)
+                interact(viewer, render, menu, viewerState, page, click, slot, event);
+        } finally {
+            MenuMetrics.record(MenuMetrics.INTERACT, menu, start);
+        }
+    }
+    private void interact(Player viewer, GuiRenderer render, IMenu menu, StateObject viewerState, int page, ClickType click, SlotChange slot, ClickInventoryEvent event) {
+        //whatever happens, the client state of this slot is no longer known
+        render.forgetSlot(viewer, slot.getSlot());
         //get the element
-        Set<IElement> elements = MenuUtil.getAllElementsAt(
-                menu,
-                menu.getPlayerState(viewer.getUniqueId()).getInt(StateProperties.PAGE).orElse(1),
-                slot.getSlot());
+        Set<IElement> elements = MenuUtil.getRenderElementsAt(menu, page, slot.getSlot());
 
         SlotChange testChange = slot;
         // copied items onto cursor
-        if (event instanceof ClickInventoryEvent.Middle && !slot.getItemsTaken().isPresent()) {
+        if (click.middle && !slot.getItemsTaken().isPresent()) {
             testChange = new SlotChange(event.getCursorTransaction().getFinal(), slot.getItemsGiven().orElse(null), slot.getSlot(), slot.getTransaction());
         }
 
@@ -128,33 +182,32 @@ public class GuiRenderer extends AbstractMenuRenderer {
         } else if (menu.pages() > 1 && testChange.getSlot().getY() == pageHeight-1 && testChange.getSlot().getX() >= 3 && testChange.getSlot().getX() <= 5) {
             //automatic pagination buttons
             interactionCancel(testChange, event);
-            int page = menu
-                    .getPlayerState(viewer.getUniqueId())
-                    .getInt(StateProperties.PAGE)
-                    .orElse(1);
             if (testChange.getSlot().getX() == 3 && page > 1) {
-                menu.getPlayerState(viewer.getUniqueId()).set(StateProperties.PAGE, page-1);
+                viewerState.setInt(StateProperties.PAGE_KEY, page-1);
                 invalidate();
             } else if (testChange.getSlot().getX() == 5 && page < menu.pages()) {
-                menu.getPlayerState(viewer.getUniqueId()).set(StateProperties.PAGE, page+1);
+                viewerState.setInt(StateProperties.PAGE_KEY, page+1);
                 invalidate();
             }
         } else if (elements.isEmpty()) {
             //prevent putting items into empty slots
             interactionCancel(testChange, event);
-        } else for (IElement e : elements) {
-            if (event instanceof ClickInventoryEvent.NumberPress) {
+        } else for (IElement shared : elements) {
+            //bound menus copy elements before they might change
+            IElement e = menu instanceof BoundMenuImpl ? ((BoundMenuImpl) menu).materialize(shared) : shared;
+            ElementType type = elementTypes.computeIfAbsent(e.getClass(), ElementType::new);
+            if (click.numberPress) {
                 interactionCancel(testChange, event);
 
-                if (e instanceof IPressable)
+                if (type.pressable)
                     ((IPressable<?>) e).fireKeyEvent(viewer, IPressable.Buttons.fromNumberPress(((ClickInventoryEvent.NumberPress) event).getNumber()), false);
-            } else if (event instanceof ClickInventoryEvent.Drop) {
+            } else if (click.drop) {
                 interactionCancel(testChange, event);
 
                 // Drop.Outside is a mouse action, so discard that here
-                if (e instanceof IPressable && !(event instanceof ClickInventoryEvent.Drop.Outside))
-                    ((IPressable<?>) e).fireKeyEvent(viewer, IPressable.Buttons.DROP, (event instanceof ClickInventoryEvent.Drop.Full));
-            } else if (e instanceof IInventory) {
+                if (type.pressable && !click.dropOutside)
+                    ((IPressable<?>) e).fireKeyEvent(viewer, IPressable.Buttons.DROP, click.dropFull);
+            } else if (type.inventory) {
                 // somewhat special case for IInventory slots
                 IInventory<?> ie = (IInventory<?>)e;
                 boolean cancelInventory = false;
@@ -168,13 +221,8 @@ public class GuiRenderer extends AbstractMenuRenderer {
                     cancelInventory = true;
                 }
 
-                if (e instanceof IClickable) {
-                    int button = MouseEvent.NOBUTTON;
-                    if (event instanceof ClickInventoryEvent.Primary) button = MouseEvent.BUTTON1;
-                    else if (event instanceof ClickInventoryEvent.Secondary) button = MouseEvent.BUTTON2;
-                    else if (event instanceof ClickInventoryEvent.Middle) button = MouseEvent.BUTTON3;
-                    ((IClickable<?>) e).fireClickEvent(viewer, button, (event instanceof ClickInventoryEvent.Shift));
-                }
+                if (type.clickable)
+                    ((IClickable<?>) e).fireClickEvent(viewer, click.button, click.shift);
                 if (!cancelInventory) {
                     ie.setItemStack(slot.getTransaction().getFinal());
                     ie.fireSlotChangeEvent(viewer, slot);
@@ -183,22 +231,14 @@ public class GuiRenderer extends AbstractMenuRenderer {
                 //default actions
                 //the element does not have to be a IInventory to allow inserting and removing items
                 // a fuel kind of slot for example does not need to keep the given items
-                boolean cancelInventory = false;
                 if ((e.getAccess() & IElement.GUI_ACCESS_TAKE) == 0 && testChange.getItemsTaken().map(i -> !i.isEmpty()).orElse(false)) {
                     interactionCancel(testChange, event);
-                    cancelInventory = true;
                 } else if ((e.getAccess() & IElement.GUI_ACCESS_PUT) == 0 && testChange.getItemsGiven().map(i -> !i.isEmpty()).orElse(false)) {
                     interactionCancel(testChange, event);
-                    cancelInventory = true;
                 }
 
-                if (e instanceof IClickable) {
-                    int button = MouseEvent.NOBUTTON;
-                    if (event instanceof ClickInventoryEvent.Primary) button = MouseEvent.BUTTON1;
-                    else if (event instanceof ClickInventoryEvent.Secondary) button = MouseEvent.BUTTON2;
-                    else if (event instanceof ClickInventoryEvent.Middle) button = MouseEvent.BUTTON3;
-                    ((IClickable<?>) e).fireClickEvent(viewer, button, (event instanceof ClickInventoryEvent.Shift));
-                }
+                if (type.clickable)
+                    ((IClickable<?>) e).fireClickEvent(viewer, click.button, click.shift);
             }
         }
     }
@@ -210,6 +250,11 @@ public class GuiRenderer extends AbstractMenuRenderer {
         event.setCancelled(true);
     }
 
+    @Override
+    int getViewedPage(Player viewer) {
+        return getMenu().getPlayerState(viewer.getUniqueId()).getInt(StateProperties.PAGE_KEY, 1);
+    }
+
     @Override
     synchronized void render(Player viewer) {
         Optional<Inventory> openInventory = viewer.getOpenInventory().map(Inventory::first);
@@ -228,6 +273,11 @@ public class GuiRenderer extends AbstractMenuRenderer {
         }
         boolean inventoryPresent = plugin != null && plugin.getId().equals(MegaMenus.getInstance().asContainer().getId());
         Optional<MenuRenderer> render = RenderManager.getRenderFor(viewer);
+        if (!render.isPresent() || !render.get().equals(this)) {
+            //the inventory will be new or drawn by a different renderer
+            sentFrames.remove(viewer.getUniqueId());
+            openSlots.remove(viewer.getUniqueId());
+        }
         if (!render.isPresent()) {
             //open the inventory to the player if no menu was already open
             viewer.openInventory(unlinkedInventoryProvider.apply(pageHeight)).ifPresent(i->
@@ -260,82 +310,408 @@ public class GuiRenderer extends AbstractMenuRenderer {
         }
 
     }
+    @Override
+    public synchronized void close(Player viewer) {
+        super.close(viewer);
+        sentFrames.remove(viewer.getUniqueId());
+        openSlots.remove(viewer.getUniqueId());
+    }
+
+    @Override
+    public synchronized void closeSilent(Player viewer) {
+        super.closeSilent(viewer);
+        sentFrames.remove(viewer.getUniqueId());
+        openSlots.remove(viewer.getUniqueId());
+    }
+
+    /** the last item sent into every slot (index = y*9+x) for each viewer, null if unknown */
+    private Map<UUID, ItemStackSnapshot[]> sentFrames = new HashMap<>();
+    /** the frame currently composed for a viewer, slots painted while composing are collected here */
+    private Map<UUID, Frame> composing = new HashMap<>();
+
+    /**
+     * The slot contents composed for one redraw. Composing a frame only reads menu and element
+     * state, applying it is the only stage that writes to the inventory.
+     */
+    static final class Frame {
+        final ItemStackSnapshot[] slots = new ItemStackSnapshot[54];
+        /** slot mask of all slots set in this frame */
+        long mask = 0L;
+        void set(SlotPos pos, ItemStackSnapshot item) {
+            long bit = MenuUtil.getSlotBit(pos);
+            if (bit == 0L) return;
+            slots[pos.getY()*9+pos.getX()] = item;
+            mask |= bit;
+        }
+        /** copies all slots in the slot mask that are set in the other frame */
+        void copy(Frame from, long slots) {
+            slots &= from.mask;
+            mask |= slots;
+            for (; slots != 0L; slots &= slots-1) {
+                int index = Long.numberOfTrailingZeros(slots);
+                this.slots[index] = from.slots[index];
+            }
+        }
+    }
+
+    /**
+     * Slot contents of one page that are the same for every viewer. The first viewer to compose
+     * a slot stores it here, all other viewers on that page copy it instead of rendering again.
+     */
+    static final class SharedFrame {
+        final Frame frame = new Frame();
+        /** the slots painted by every viewer independent element composed so far */
+        final Map<IElement, Long> elements = new HashMap<>();
+        /** slots holding pagination or background composed so far */
+        long decoration = 0L;
+    }
+    /** shared frames by page, only valid during one revalidation and until the menu or any element is invalidated */
+    private Map<Integer, SharedFrame> sharedFrames = new HashMap<>();
+    /** redraws outside of revalidate, e.g. when a viewer opens the menu, must not share frames */
+    private boolean revalidating = false;
+
+
+    /**
+     * Puts the item into the slot of the viewers menu inventory. While a redraw is composing
+     * the item is only collected and written when the frame is applied, otherwise the slot is
+     * written immediately.
+     * @param viewer the player to paint the slot for
+     * @param pos the slot to paint
+     * @param item the item to display, empty items clear the slot
+     */
+    public void paintSlot(Player viewer, SlotPos pos, ItemStackSnapshot item) {
+        Frame frame = composing.get(viewer.getUniqueId());
+        if (frame != null) {
+            frame.set(pos, item);
+        } else {
+            writeSlot(viewer, getOpenSlots(viewer), pos, item);
+        }
+    }
+    /**
+     * Writes the item into the slot of the viewers menu inventory, unless the same item
+     * was already sent into this slot. Instead of reading the slot from the inventory the
+     * item is compared against the last item sent by this renderer.
+     */
+    private void writeSlot(Player viewer, OpenSlots view, SlotPos pos, ItemStackSnapshot item) {
+        ItemStackSnapshot[] frame = sentFrames.computeIfAbsent(viewer.getUniqueId(), k->new ItemStackSnapshot[54]);
+        int index = pos.getY()*9+pos.getX();
+        ItemStackSnapshot sent = frame[index];
+        boolean empty = isEmpty(item);
+        if (sent != null && (sent == item || (empty ? isEmpty(sent) : sent.equals(item))))
+            return;
+        Inventory slot = view.get(pos);
+        if (slot == null || slot.capacity() == 0) {
+            MegaMenus.w("No slot matched position %d,%d", pos.getX(), pos.getY());
+            return;
+        }
+        if (empty) {
+            slot.clear(); //because setting air / empty stacks does nothing
+        } else {
+            slot.set(item.createStack());
+        }
+        frame[index] = item;
+    }
+
+    /**
+     * The slots of the menu inventory a viewer has open. Slots are resolved in a single pass
+     * when the inventory is opened and reused for all paints until a different inventory is open.
+     */
+    static final class OpenSlots {
+        final Container container;
+        /** the menu grid within the container */
+        final Inventory view;
+        /** index = y*9+x, null if not yet resolved */
+        final Inventory[] slots = new Inventory[54];
+        OpenSlots(Container container) {
+            this.container = container;
+            this.view = container.first();
+            for (Inventory slot : view.slots()) {
+                Integer index = slot.getInventoryProperty(SlotIndex.class).map(SlotIndex::getValue).orElse(null);
+                if (index != null && index >= 0 && index < 54 && slots[index] == null)
+                    slots[index] = slot;
+            }
+        }
+        /** @return the slot at this position, slots without index property are queried once */
+        Inventory get(SlotPos pos) {
+            int index = pos.getY()*9+pos.getX();
+            if (slots[index] == null)
+                slots[index] = MenuUtil.getSlotByAnyMeans(view, pos).orElse(null);
+            return slots[index];
+        }
+    }
+    /** the resolved slots of the inventory each viewer has open */
+    private Map<UUID, OpenSlots> openSlots = new HashMap<>();
+    /**
+     * @return the slots of the inventory the viewer has open, resolving them if the viewer
+     * opened a different inventory since the last paint
+     */
+    private OpenSlots getOpenSlots(Player viewer) {
+        Container container = viewer.getOpenInventory().get(); //when is this not present?
+        OpenSlots open = openSlots.get(viewer.getUniqueId());
+        if (open == null || open.container != container) {
+            open = new OpenSlots(container);
+            openSlots.put(viewer.getUniqueId(), open);
+        }
+        return open;
+    }
+
+    /**
+     * Forgets what was sent into this slot, so the next paint will update the slot
+     * @param viewer the player that changed the slot
+     * @param pos the slot to forget
+     */
+    void forgetSlot(Player viewer, SlotPos pos) {
+        ItemStackSnapshot[] frame = sentFrames.get(viewer.getUniqueId());
+        if (frame != null && MenuUtil.getSlotBit(pos) != 0L)
+            frame[pos.getY()*9+pos.getX()] = null;
+    }
+    /**
+     * Forgets what was sent into the slots, so the next paint will update these slots
+     * @param viewer the player to forget slots for
+     * @param slots the slot mask of slots to forget
+     */
+    private void forgetSlots(Player viewer, long slots) {
+        ItemStackSnapshot[] frame = sentFrames.get(viewer.getUniqueId());
+        if (frame == null) return;
+        for (slots &= MenuUtil.ALL_SLOTS; slots != 0L; slots &= slots-1)
+            frame[Long.numberOfTrailingZeros(slots)] = null;
+    }
+    /** Properly checks for empty stacks, NONE is checked by identity as it's painted for all cleared slots */
+    private static boolean isEmpty(ItemStackSnapshot item) {
+        return item == ItemStackSnapshot.NONE || item.getQuantity() == 0 || item.getType().equals(ItemTypes.AIR);
+    }
+
+    /** slot mask of slots that need to redraw for all viewers, even if this renderer is valid */
+    private long dirtySlots = 0L;
+
+    /**
+     * Only marks the slots occupied by the element for redrawing
+     */
+    @Override
+    public synchronized void invalidate(IElement element) {
+        dirtySlots |= MenuUtil.getSlotMask(element);
+        sharedFrames.clear();
+        wakeElement(element);
+    }
+
+    @Override
+    public synchronized void invalidate() {
+        super.invalidate();
+        sharedFrames.clear();
+    }
+
+    @Override
+    public synchronized boolean needsRevalidation() {
+        return !valid || dirtySlots != 0L;
+    }
+
+    /**
+     * If the whole menu was invalidated this will redraw all slots, otherwise only
+     * slots marked by invalidated elements are redrawn
+     */
+    @Override
+    public synchronized void revalidate() {
+        long dirty = dirtySlots;
+        dirtySlots = 0L;
+        sharedFrames.clear();
+        revalidating = true;
+        try {
+            if (!valid) {
+                render();
+            } else if (dirty != 0L) {
+                viewers.forEach(viewer->redraw(viewer, dirty));
+            }
+        } finally {
+            revalidating = false;
+            sharedFrames.clear();
+        }
+    }
+
     private AtomicBoolean rendering = new AtomicBoolean(false);
     void redraw(Player viewer) {
+        redraw(viewer, MenuUtil.ALL_SLOTS);
+    }
+    /**
+     * Redraws all slots in the slot mask. Elements that occupy any of these slots are rendered
+     * and all remaining slots in the mask are filled with the background.
+     * @param viewer the player to redraw the slots for
+     * @param dirty the slot mask as returned by {@link MenuUtil#getSlotMask(IElement)}
+     */
+    void redraw(Player viewer, long dirty) {
         if (!viewer.getOpenInventory().get().first().getPlugin().getId().equals(MegaMenus.getInstance().asContainer().getId())) { //menu closed early
             return;
         }
+        long start = MenuMetrics.start();
         rendering.set(true);
-        List<SlotPos> paintTracker = new LinkedList<>();
-        for (int y=0; y<pageHeight; y++)
-            for (int x=0; x<9; x++)
-                paintTracker.add(SlotPos.of(x,y));
-
-        int page = getMenu()
-                .getPlayerState(viewer.getUniqueId())
-                .getInt(StateProperties.PAGE)
-                .orElse(1);
-        for (IElement element : menu.getPageElements(page)) {
-            if (isClosedByAPI(viewer)) return;
+        try {
+            Frame frame = new Frame();
+            composing.put(viewer.getUniqueId(), frame);
+            boolean composed;
+            try {
+                composed = compose(viewer, dirty, frame);
+            } finally {
+                composing.remove(viewer.getUniqueId());
+            }
+            if (composed) apply(viewer, frame);
+        } finally {
+            rendering.set(false);
+            MenuMetrics.record(MenuMetrics.REDRAW, menu, start);
+        }
+    }
+
+    /**
+     * First stage of a redraw: collects the items for all slots in the slot mask without
+     * touching the inventory.
+     * @return false if the menu was closed or changed while composing
+     */
+    private boolean compose(Player viewer, long dirty, Frame frame) {
+        long paintTracker = dirty & (MenuUtil.ALL_SLOTS >>> ((6-pageHeight)*9));
+
+        int page = getViewedPage(viewer);
+        //bound menus only have one viewer, unbound menus share what's the same for all viewers
+        SharedFrame shared = revalidating && viewers.size() > 1 && !(menu instanceof BoundMenuImpl)
+                ? sharedFrames.computeIfAbsent(page, k->new SharedFrame())
+                : null;
+        for (IElement element : MenuUtil.getRenderElements(menu, page)) {
+            if (isClosedByAPI(viewer)) return false;
+            if ((MenuUtil.getSlotMask(element) & dirty) == 0L) continue;
+            boolean share = shared != null && element instanceof ViewerIndependent;
+            Long sharedSlots = share ? shared.elements.get(element) : null;
+            if (sharedSlots != null) {
+                frame.copy(shared.frame, sharedSlots);
+                paintTracker &= ~sharedSlots;
+                continue;
+            }
+            long start = MenuMetrics.start();
             try {
                 element.validateGui(pageHeight);
-                paintTracker.removeAll(
-                    element.renderGUI(viewer)
-                );
+                long paintedBefore = frame.mask;
+                long paintedSlots = 0L;
+                for (SlotPos painted : element.renderGUI(viewer))
+                    paintedSlots |= MenuUtil.getSlotBit(painted);
+                paintTracker &= ~paintedSlots;
+                //custom elements might write slots directly, what was sent there is unknown now
+                if (!(element instanceof IElementImpl))
+                    forgetSlots(viewer, paintedSlots & ~(frame.mask & ~paintedBefore));
+                //only share if the frame now holds exactly what this element painted
+                if (share && paintedSlots != 0L && (paintedSlots & paintedBefore) == 0L && (paintedSlots & ~frame.mask) == 0L) {
+                    shared.frame.copy(frame, paintedSlots);
+                    shared.elements.put(element, paintedSlots);
+                }
+                MenuMetrics.record(MenuMetrics.RENDER_GUI, element, start);
             } catch (Exception e) {
-                rendering.set(false);
                 new RuntimeException("Unable to render Element "+element.getUniqueId().toString(), e).printStackTrace();
             }
         }
         if (!RenderManager.getRenderFor(viewer).map(MenuRenderer::getMenu).filter(m->m.equals(menu)).isPresent()) {
-            rendering.set(false);
-            return;
+            return false;
         }
 
         //pagination
-        Inventory view = viewer.getOpenInventory().get().first(); //when is this not present?
-        if (menu.pages()>1) {
-            ItemStack[] pi = MegaMenus.getPaginationIcons();
-            int pagination = (pageHeight-1)*9+3;
-            if (page > 1) {
-                view.query(SlotIndex.of(pagination)).set(ItemStack.builder().from(pi[0])
-                        .add(Keys.DISPLAY_NAME, Text.of("< Back"))
-                        .build());
-            } else {
-                view.query(SlotIndex.of(pagination)).clear();
-            }
-            view.query(SlotIndex.of(pagination+1)).set(ItemStack.builder().from(pi[1])
-                    .add(Keys.DISPLAY_NAME, Text.of("Page ",page,"/",menu.pages()))
-                    .quantity(page)
-                    .build());
-            if (page < menu.pages()) {
-                view.query(SlotIndex.of(pagination+2)).set(ItemStack.builder().from(pi[2])
-                        .add(Keys.DISPLAY_NAME, Text.of("Next >"))
-                        .build());
-            } else {
-                view.query(SlotIndex.of(pagination+2)).clear();
+        int pagination = (pageHeight-1)*9+3;
+        long paginationSlots = 0b111L << pagination;
+        if (shared != null && menu.pages()>1 && (shared.decoration & paginationSlots) == paginationSlots) {
+            frame.copy(shared.frame, dirty & paginationSlots);
+        } else if (menu.pages()>1 && (dirty & paginationSlots) != 0L) {
+            int paginationRow = pageHeight-1;
+            //the stacks are built once, so unchanged pagination slots are skipped when applied
+            frame.set(SlotPos.of(3, paginationRow), page > 1
+                    ? MegaMenus.getPaginationBack()
+                    : ItemStackSnapshot.NONE);
+            frame.set(SlotPos.of(4, paginationRow), MegaMenus.getPageIndicator(page, menu.pages()));
+            frame.set(SlotPos.of(5, paginationRow), page < menu.pages()
+                    ? MegaMenus.getPaginationNext()
+                    : ItemStackSnapshot.NONE);
+            if (shared != null) {
+                shared.frame.copy(frame, paginationSlots);
+                shared.decoration |= paginationSlots;
             }
-            paintTracker.remove(SlotPos.of(3,pageHeight-1));
-            paintTracker.remove(SlotPos.of(4,pageHeight-1));
-            paintTracker.remove(SlotPos.of(5,pageHeight-1));
         }
+        if (menu.pages()>1)
+            paintTracker &= ~paginationSlots;
         //background
         BackgroundProvider provider = menu.getBackground();
         if (provider == null) provider = BackgroundProvider.BACKGROUND_DEFAULT;
-        for (SlotPos p : paintTracker) {
-            if (!RenderManager.getRenderFor(viewer).map(MenuRenderer::getMenu).filter(m->m.equals(menu)).isPresent()) {
-                break;
+        if (provider != backgroundProvider) {
+            backgroundProvider = provider;
+            backgroundChanged();
+        }
+        boolean positional = provider instanceof ViewerIndependent;
+        if (shared != null && positional) {
+            long sharedBackground = paintTracker & shared.decoration;
+            frame.copy(shared.frame, sharedBackground);
+            paintTracker &= ~sharedBackground;
+        } else {
+            shared = null;
+        }
+        long background = paintTracker;
+        for (; paintTracker != 0L; paintTracker &= paintTracker-1) { //pop lowest slot
+            int index = Long.numberOfTrailingZeros(paintTracker);
+            SlotPos p = SlotPos.of(index%9, index/9);
+            IIcon at;
+            if (positional && (backgroundKnown & (1L << index)) != 0L) {
+                at = backgroundIcons[index];
+            } else {
+                at = provider.drawAt(p, menu.getState(), menu.getPlayerState(viewer.getUniqueId()));
+                if (positional) {
+                    backgroundIcons[index] = at;
+                    backgroundKnown |= 1L << index;
+                }
             }
-            IIcon at = provider.drawAt(p, menu.getState(), menu.getPlayerState(viewer.getUniqueId()));
-            if (at == null)
-                view.query(p).clear();
-            else
-                view.query(p).set(ItemStack.builder()
-                        .fromContainer(at.render().toContainer()
-                                .set(AntiGlitch.inject, true)
-                        ).build()
-                );
+            frame.set(p, at == null ? ItemStackSnapshot.NONE : getBackgroundStack(at));
+        }
+        if (shared != null) {
+            shared.frame.copy(frame, background);
+            shared.decoration |= background;
+        }
+        return true;
+    }
+
+    /** the background provider the background caches are for */
+    private BackgroundProvider backgroundProvider = null;
+    /** the icons a {@link ViewerIndependent} background provider returned for each slot */
+    private IIcon[] backgroundIcons = new IIcon[54];
+    /** slot mask of all slots in backgroundIcons that were drawn, as null is a valid icon */
+    private long backgroundKnown = 0L;
+    /** the items built from background icons, marked for anti glitch */
+    private Map<IIcon, IconStackCache> backgroundStacks = new HashMap<>();
+
+    /**
+     * Called when the background provider changed or reported a change when ticked,
+     * forgets the icons drawn by the previous provider
+     */
+    @Override
+    void backgroundChanged() {
+        Arrays.fill(backgroundIcons, null);
+        backgroundKnown = 0L;
+    }
+    /**
+     * @return the item to display for this background icon. Built items are reused, as long as
+     * the icon renders the same frame
+     */
+    private ItemStackSnapshot getBackgroundStack(IIcon icon) {
+        IconStackCache cache = backgroundStacks.get(icon);
+        if (cache == null) {
+            //providers creating new icons for every slot would only fill the cache
+            if (backgroundStacks.size() >= 54) backgroundStacks.clear();
+            cache = new IconStackCache();
+            backgroundStacks.put(icon, cache);
+        }
+        return cache.get(icon.render(), null, null, true);
+    }
+
+    /**
+     * Second stage of a redraw: writes the composed items into the viewers inventory,
+     * skipping slots that already show the item.
+     */
+    private void apply(Player viewer, Frame frame) {
+        if (isClosedByAPI(viewer) ||
+                !RenderManager.getRenderFor(viewer).map(MenuRenderer::getMenu).filter(m->m.equals(menu)).isPresent())
+            return;
+        OpenSlots view = getOpenSlots(viewer);
+        for (long pending = frame.mask; pending != 0L; pending &= pending-1) {
+            int index = Long.numberOfTrailingZeros(pending);
+            writeSlot(viewer, view, SlotPos.of(index%9, index/9), frame.slots[index]);
         }
-        rendering.set(false);
     }
 }
@@ -0,0 +1,164 @@
+package de.dosmike.sponge.megamenus.impl;
+
+import de.dosmike.sponge.megamenus.api.elements.PositionProvider;
+import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
+import de.dosmike.sponge.megamenus.impl.util.SlotGrid;
+import org.spongepowered.api.item.inventory.property.SlotPos;
+
+import java.util.*;
+
+/**
+ * Dense page storage shared by the menu implementations. Page n is stored at index n-1.
+ * Every page keeps its elements in insertion order, a {@link SlotGrid} to look up elements
+ * by position and the position of the last element put on the page.<br>
+ * Since all per-page data lives in the page object, removing a page only has to drop
+ * the page from the list instead of moving every following page entry.
+ */
+final class MenuPages {
+
+    static final class Page {
+        private final List<IElement> elements = new ArrayList<>();
+        private final Collection<IElement> view = Collections.unmodifiableCollection(elements);
+        private final SlotGrid grid = new SlotGrid();
+        /** the position the last element was put at, passed to the {@link PositionProvider} */
+        SlotPos lastPutPosition = null;
+
+        /** @return a read-only view of all elements on this page */
+        Collection<IElement> getElements() {
+            return view;
+        }
+        /** @return an immutable set of all elements occupying this position */
+        Set<IElement> getElementsAt(SlotPos pos) {
+            return grid.get(pos);
+        }
+    }
+
+    private final List<Page> pages = new ArrayList<>();
+    /** the page every element is stored on, in order to find it again after a move */
+    private final Map<IElement, Page> elementPages = new HashMap<>();
+    /** counts changes to the elements on any page, moving elements is not counted */
+    private int version = 0;
+
+    /** @return a number that changes whenever elements are added, removed or replaced */
+    int version() {
+        return version;
+    }
+
+    /** @return the number of pages, at least 1 */
+    int count() {
+        return Math.max(1, pages.size());
+    }
+
+    /**
+     * @param page the page number (1 based)
+     * @return the page or null if there's no such page
+     */
+    Page get(int page) {
+        return page >= 1 && page <= pages.size() ? pages.get(page-1) : null;
+    }
+
+    /**
+     * Adds empty pages until the requested page exists
+     * @param page the page number (1 based)
+     * @return the page
+     */
+    Page getOrCreate(int page) {
+        while (pages.size() < page)
+            pages.add(new Page());
+        return pages.get(page-1);
+    }
+
+    /** @return a read-only view of all elements on the page, or an empty collection */
+    Collection<IElement> getElements(int page) {
+        Page p = get(page);
+        return p == null ? Collections.emptyList() : p.view;
+    }
+
+    /** @return an immutable set of all elements occupying the position on the page */
+    Set<IElement> getElementsAt(int page, SlotPos pos) {
+        Page p = get(page);
+        return p == null ? Collections.emptySet() : p.grid.get(pos);
+    }
+
+    void add(Page page, IElement element) {
+        page.elements.add(element);
+        page.grid.add(element);
+        elementPages.put(element, page);
+        version++;
+    }
+
+    void remove(Page page, IElement element) {
+        page.elements.remove(element);
+        page.grid.remove(element);
+        elementPages.remove(element);
+        version++;
+    }
+
+    /**
+     * Removes the page, all following pages move down by one.
+     * @return the elements that were on the page
+     */
+    List<IElement> removePage(int page) {
+        if (page < 1 || page > pages.size())
+            return Collections.emptyList();
+        Page removed = pages.remove(page-1);
+        removed.elements.forEach(elementPages::remove);
+        version++;
+        return removed.elements;
+    }
+
+    /**
+     * Removes all elements from the page, but keeps the page.
+     * @return the elements that were on the page
+     */
+    List<IElement> clearPage(int page) {
+        Page p = get(page);
+        if (p == null)
+            return Collections.emptyList();
+        List<IElement> removed = new ArrayList<>(p.elements);
+        p.elements.clear();
+        p.grid.clear();
+        removed.forEach(elementPages::remove);
+        version++;
+        return removed;
+    }
+
+    /**
+     * @param element the element to look for
+     * @return the page the element is stored on or null if the element is not on any page
+     */
+    Page pageOf(IElement element) {
+        return elementPages.get(element);
+    }
+
+    /**
+     * Puts the replacement at the index of element on the page
+     * @param page the page holding element
+     * @param element the element to replace
+     * @param replacement the new element
+     */
+    void replace(Page page, IElement element, IElement replacement) {
+        int index = page.elements.indexOf(element);
+        if (index < 0) return;
+        page.elements.set(index, replacement);
+        page.grid.remove(element);
+        page.grid.add(replacement);
+        elementPages.remove(element);
+        elementPages.put(replacement, page);
+        version++;
+    }
+
+    /** updates the occupancy grid after the element moved */
+    void updatePosition(IElement element) {
+        Page p = elementPages.get(element);
+        if (p != null)
+            p.grid.update(element);
+    }
+
+    /** forget the last put positions on all pages */
+    void resetPositionTracking() {
+        for (Page p : pages)
+            p.lastPutPosition = null;
+    }
+
+}
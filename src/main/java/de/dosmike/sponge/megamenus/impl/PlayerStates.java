@@ -0,0 +1,252 @@
+package de.dosmike.sponge.megamenus.impl;
+
+import de.dosmike.sponge.megamenus.MegaMenus;
+import de.dosmike.sponge.megamenus.api.state.StateCodec;
+import de.dosmike.sponge.megamenus.api.state.StateObject;
+import de.dosmike.sponge.megamenus.api.state.StateProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * The player bound states of a menu. If the menu is persistent, states are loaded from the
+ * {@link StateStorage} in the background when a player joins or when first requested, changed states are collected by the storage
+ * for saving and states of offline players are dropped from memory once saved.<br>
+ * States of offline players are evicted according to the retention policy configured
+ * in the {@link StateStorage}. For menus that are not persistent this discards the state.
+ */
+final class PlayerStates {
+
+    private static final class Entry {
+        final StateObject state;
+        long lastAccess = System.currentTimeMillis();
+        /** the modification count when this state was last handed to the storage */
+        long savedModifications;
+        /** the encoded state last handed to the storage, only kept if it has mutable values */
+        byte[] savedData = null;
+        Entry(StateObject state, boolean dirty) {
+            this.state = state;
+            this.savedModifications = dirty ? -1L : state.getModificationCount();
+            if (!dirty && state.hasMutableValues()) {
+                try {
+                    savedData = encode(state);
+                } catch (IOException | RuntimeException ignore) {
+                    //can't be saved anyways
+                }
+            }
+        }
+        /**
+         * Mutable values can change without the state noticing, so these states
+         * are compared to the data last saved
+         */
+        boolean isDirty() {
+            if (state.getModificationCount() != savedModifications) return true;
+            if (savedData == null) return false;
+            try {
+                return !Arrays.equals(encode(state), savedData);
+            } catch (IOException | RuntimeException e) {
+                return false;
+            }
+        }
+        /**
+         * Encodes the state if it changed since it was last handed to the storage and marks it saved
+         * @return the encoded state or null if it did not change
+         */
+        byte[] collect() throws IOException {
+            boolean modified = state.getModificationCount() != savedModifications;
+            if (!modified && savedData == null) return null;
+            savedModifications = state.getModificationCount();
+            byte[] data = encode(state);
+            if (!modified && Arrays.equals(data, savedData)) return null;
+            savedData = state.hasMutableValues() ? data : null;
+            return data;
+        }
+    }
+    private static byte[] encode(StateObject state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StateCodec.write(state, out);
+        return out.toByteArray();
+    }
+
+    /** in access order, least recently used first */
+    private final Map<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** the name within the {@link StateStorage}, null if not persistent */
+    private String persistentName = null;
+    /** players that had their state cleared since the last save */
+    private final Set<UUID> deleted = new HashSet<>();
+
+    PlayerStates() {
+        StateStorage.register(this);
+    }
+
+    /**
+     * @return the state for this player, loading or creating it if necessary
+     */
+    StateObject get(UUID player) {
+        Entry entry = entries.get(player);
+        if (entry == null) {
+            //states removed since the last save are still in the store
+            StateObject loaded = persistentName == null || deleted.contains(player)
+                    ? null : StateStorage.load(persistentName, player);
+            entry = insert(player, new Entry(loaded != null ? loaded : new StateObject(), false));
+        } else {
+            entry.lastAccess = System.currentTimeMillis();
+        }
+        return entry.state;
+    }
+    /**
+     * Called with a state loaded in the background. The loaded state is dropped if the state
+     * was requested or removed in the meantime, as the state in memory is more recent.
+     * @param player the player the state was loaded for
+     * @param loaded the loaded state or null if none was stored
+     */
+    void loaded(UUID player, StateObject loaded) {
+        if (entries.containsKey(player) || deleted.contains(player)) return;
+        insert(player, new Entry(loaded != null ? loaded : new StateObject(), false));
+    }
+    /**
+     * @return true if the state for this player has to be loaded from the store when requested
+     */
+    boolean needsLoading(UUID player) {
+        return persistentName != null && !entries.containsKey(player) && !deleted.contains(player);
+    }
+    void put(UUID player, StateObject state) {
+        insert(player, new Entry(state, true));
+        deleted.remove(player);
+    }
+    private Entry insert(UUID player, Entry entry) {
+        entries.put(player, entry);
+        int max = StateStorage.getMaxEntries();
+        if (max > 0 && entries.size() > max)
+            StateStorage.reportEvictions(StateStorage.EVICTION_LIMIT, evictOverflow(max, p->p.equals(player) || StateStorage.isOnline(p)));
+        return entry;
+    }
+    void putAll(Map<UUID, StateObject> states) {
+        states.forEach(this::put);
+    }
+    void remove(UUID player) {
+        entries.remove(player);
+        if (persistentName != null) deleted.add(player);
+    }
+    void clear() {
+        entries.clear();
+        deleted.clear();
+        if (persistentName != null)
+            StateStorage.deleteAll(persistentName);
+    }
+    /**
+     * Moves viewers on pages after the removed page down by one page, viewers on the removed
+     * page are moved to the previous page unless it was the first page.
+     * @param page the page that was removed from the menu
+     */
+    void pageRemoved(int page) {
+        forEach((player, state)->{
+            Optional<Integer> viewerpage = state.getInt(StateProperties.PAGE);
+            if (viewerpage.isPresent() && (viewerpage.get() > page || (viewerpage.get() == page && page > 1))) {
+                state.set(StateProperties.PAGE, viewerpage.get() - 1);
+            }
+        });
+    }
+    /** iterates all states currently in memory */
+    void forEach(BiConsumer<UUID, StateObject> action) {
+        entries.forEach((player, entry)->action.accept(player, entry.state));
+    }
+
+    /**
+     * Start persisting these states under the name. States already in memory are
+     * saved with the next batch, replacing what was stored for these players.
+     */
+    void persist(String name) {
+        //names consisting of dots only are reserved by most file systems
+        if (name.chars().allMatch(c->c=='.'))
+            throw new IllegalArgumentException("Invalid name for persistent states: \""+name+"\"");
+        if (name.equals(persistentName)) return;
+        persistentName = name;
+        entries.values().forEach(entry->entry.savedModifications = -1L);
+    }
+    /** @return the name these states are stored under or null */
+    String getPersistentName() {
+        return persistentName;
+    }
+
+    /**
+     * Encodes all changed states with the {@link StateCodec} and marks them saved. The encoded
+     * states don't share any values with the states in memory, so they are safe to be written
+     * from another thread.
+     * @param saves will receive the encoded changed states
+     * @param deletes will receive all players that had their state removed
+     */
+    void collectChanges(Map<UUID, byte[]> saves, Set<UUID> deletes) {
+        deletes.addAll(deleted);
+        deleted.clear();
+        entries.forEach((player, entry)->{
+            try {
+                byte[] data = entry.collect();
+                if (data != null) saves.put(player, data);
+            } catch (IOException | RuntimeException e) {
+                MegaMenus.w("Could not save state of %s for menu %s: %s", player.toString(), persistentName, e.toString());
+            }
+        });
+    }
+
+    /** persistent states can only be evicted once saved, other states are discarded */
+    private boolean isEvictable(Entry entry) {
+        return persistentName == null || !entry.isDirty();
+    }
+
+    /**
+     * Drops states from memory that were not accessed for some time
+     * @param idleSince states last accessed before this time may be evicted
+     * @param keep states for these players are always kept, e.g. online players
+     * @return the amount of states evicted
+     */
+    int evictIdle(long idleSince, Predicate<UUID> keep) {
+        int evicted = 0;
+        Iterator<Map.Entry<UUID, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, Entry> e = it.next();
+            Entry entry = e.getValue();
+            if (entry.lastAccess < idleSince && isEvictable(entry) && !keep.test(e.getKey())) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+    /**
+     * Drops the least recently used states until no more than max states are in memory
+     * @param max the amount of states to keep
+     * @param keep states for these players are always kept, e.g. online players
+     * @return the amount of states evicted
+     */
+    int evictOverflow(int max, Predicate<UUID> keep) {
+        int evicted = 0;
+        Iterator<Map.Entry<UUID, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > max && it.hasNext()) {
+            Map.Entry<UUID, Entry> e = it.next();
+            if (isEvictable(e.getValue()) && !keep.test(e.getKey())) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+    /**
+     * Drops the state of a player that left, persistent states are only dropped once saved
+     * @return true if the state was evicted immediately
+     */
+    boolean evictPlayer(UUID player) {
+        Entry entry = entries.get(player);
+        if (entry == null) return false;
+        if (isEvictable(entry)) {
+            entries.remove(player);
+            return true;
+        }
+        entry.lastAccess = 0L; //the next idle eviction after saving will pick this up
+        return false;
+    }
+
+}
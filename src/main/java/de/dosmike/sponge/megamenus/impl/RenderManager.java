@@ -4,11 +4,8 @@ import de.dosmike.sponge.megamenus.api.IMenu;
 import de.dosmike.sponge.megamenus.api.MenuRenderer;
 import org.spongepowered.api.entity.living.player.Player;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Keeps track of all active MenuRenderer instances and provides convenience access methods
@@ -18,6 +15,10 @@ final public class RenderManager {
 
     private static AnimationManager animations = new AnimationManager();
     private static Set<MenuRenderer> renders = new HashSet<>();
+    /** index of the renderer every player is currently viewing, maintained by the renderer */
+    private static Map<UUID, MenuRenderer> viewerIndex = new HashMap<>();
+    /** index of all registered renderer for a menu. bound renderer are additionally listed for their base menu */
+    private static Map<IMenu, Set<MenuRenderer>> menuIndex = new HashMap<>();
     /**
      * Register a new renderer.<br>
      * If the {@link AnimationManager} was not yet set or removed it will be instantiated again.<br>
@@ -26,8 +27,9 @@ final public class RenderManager {
      */
     public static void register(MenuRenderer menuRenderer) {
         if (renders.add(menuRenderer)) {
+            indexMenu(menuRenderer);
             if (renders.size() == 1) //currently first and only render
-                animations.finishTick(); //reset animation timer
+                animations.resetTimer();
             if (menuRenderer.getRenderListener() != null)
                 menuRenderer.getRenderListener().resumed(menuRenderer, menuRenderer.getMenu());
         }
@@ -38,8 +40,11 @@ final public class RenderManager {
      * @return the currently active renderer for this player, if any
      */
     public static Optional<MenuRenderer> getRenderFor(Player viewer) {
+        MenuRenderer indexed = viewerIndex.get(viewer.getUniqueId());
+        if (indexed != null) return Optional.of(indexed);
+        //custom renderer don't report their viewers to the index
         for (MenuRenderer r : renders)
-            if (r.getViewers().contains(viewer))
+            if (!(r instanceof AbstractMenuRenderer) && r.getViewers().contains(viewer))
                 return Optional.of(r);
         return Optional.empty();
     }
@@ -51,10 +56,45 @@ final public class RenderManager {
      *         (where the rendered menu is a bound instance) the passed menu is the base menu
      */
     public static Collection<MenuRenderer> getRenderFor(IMenu menu) {
-        return renders.stream().filter(r->
-                r.getMenu().equals(menu) ||
-                ((r.getMenu() instanceof BoundMenuImpl) && ((BoundMenuImpl) r.getMenu()).getBaseMenu().equals(menu))
-        ).collect(Collectors.toSet());
+        Set<MenuRenderer> indexed = menuIndex.get(menu);
+        return indexed == null ? Collections.emptySet() : Collections.unmodifiableSet(indexed);
+    }
+
+    /**
+     * Called by the renderer when a player was added to the viewers, after any
+     * previous renderer was closed for this player.
+     * @param viewer the player that is now viewing the renderer
+     * @param render the renderer the player is now viewing
+     */
+    static void trackViewer(Player viewer, MenuRenderer render) {
+        viewerIndex.put(viewer.getUniqueId(), render);
+    }
+    /**
+     * Called by the renderer when a player was removed from the viewers.
+     * If the player already moved on to another renderer the index is kept.
+     * @param viewer the player that no longer views the renderer
+     * @param render the renderer the player stopped viewing
+     */
+    static void untrackViewer(Player viewer, MenuRenderer render) {
+        viewerIndex.remove(viewer.getUniqueId(), render);
+    }
+
+    private static void indexMenu(MenuRenderer render) {
+        IMenu menu = render.getMenu();
+        menuIndex.computeIfAbsent(menu, k->new HashSet<>()).add(render);
+        if (menu instanceof BoundMenuImpl)
+            menuIndex.computeIfAbsent(((BoundMenuImpl) menu).getBaseMenu(), k->new HashSet<>()).add(render);
+    }
+    private static void unindexMenu(MenuRenderer render) {
+        IMenu menu = render.getMenu();
+        unindexMenu(menu, render);
+        if (menu instanceof BoundMenuImpl)
+            unindexMenu(((BoundMenuImpl) menu).getBaseMenu(), render);
+    }
+    private static void unindexMenu(IMenu menu, MenuRenderer render) {
+        Set<MenuRenderer> indexed = menuIndex.get(menu);
+        if (indexed != null && indexed.remove(render) && indexed.isEmpty())
+            menuIndex.remove(menu);
     }
     /**
      * When a player changes the target render, they have to be kicked out of all other renders.
@@ -78,6 +118,44 @@ final public class RenderManager {
         renders.forEach(r->r.closeSilent(viewer));
     }
 
+    /** time in nano seconds revalidating renders may take per tick, 0 for no limit */
+    private static long tickBudget = 0L;
+    /** renders a player interacted with since the last tick */
+    private static Set<MenuRenderer> prioritized = new LinkedHashSet<>();
+    /** renders that ran out of budget in a previous tick, oldest first */
+    private static Set<MenuRenderer> backlog = new LinkedHashSet<>();
+    /** number of ticks in a row the backlog was not empty */
+    private static int backlogTicks = 0;
+
+    /**
+     * Limits the time spent redrawing menus within a single tick. Renders that did not get
+     * their turn are redrawn first in the next tick. At least one render is redrawn per tick.
+     * @param milliseconds the time per tick, 0 or less to always redraw all renders
+     */
+    public static void setTickBudget(int milliseconds) {
+        tickBudget = milliseconds <= 0 ? 0L : TimeUnit.MILLISECONDS.toNanos(milliseconds);
+    }
+    /**
+     * Moves the renderer to the front for the next revalidation, because a viewer is
+     * waiting for a response.
+     * @param render the renderer a player interacted with
+     */
+    public static void prioritize(MenuRenderer render) {
+        prioritized.add(render);
+    }
+    /**
+     * @return the amount of renders that ran out of tick budget and are still waiting to be redrawn
+     */
+    public static int getBacklog() {
+        return backlog.size();
+    }
+    /**
+     * @return for how many ticks in a row renders had to be postponed to the next tick
+     */
+    public static int getBacklogTicks() {
+        return backlogTicks;
+    }
+
     /**
      * this method will invoke automatic refreshing for all menus with animated elements
      */
@@ -85,6 +163,7 @@ final public class RenderManager {
         //remove stubbed renders
         renders.removeIf(r->{
             if (!r.hasViewers()) {
+                unindexMenu(r);
                 if (r.getRenderListener() != null)
                     r.getRenderListener().paused(r, r.getMenu());
                 return true;
@@ -94,8 +173,25 @@ final public class RenderManager {
             render.think(animations);
         if (animations!=null)
             animations.finishTick();
-        for (MenuRenderer render : renders)
-            render.revalidate();
+
+        //clicked renders first, then those left over from the last tick, then the rest
+        Set<MenuRenderer> queue = new LinkedHashSet<>(prioritized);
+        queue.addAll(backlog);
+        queue.addAll(renders);
+        prioritized.clear();
+        backlog.clear();
+        long start = System.nanoTime();
+        boolean first = true;
+        for (MenuRenderer render : queue) {
+            if (!renders.contains(render) || !render.needsRevalidation()) continue;
+            if (!first && tickBudget > 0L && System.nanoTime()-start >= tickBudget) {
+                backlog.add(render);
+            } else {
+                render.revalidate();
+                first = false;
+            }
+        }
+        backlogTicks = backlog.isEmpty() ? 0 : backlogTicks+1;
     }
 
 }
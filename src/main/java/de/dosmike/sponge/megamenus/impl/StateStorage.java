@@ -0,0 +1,305 @@
+package de.dosmike.sponge.megamenus.impl;
+
+import de.dosmike.sponge.megamenus.MegaMenus;
+import de.dosmike.sponge.megamenus.api.state.StateCodec;
+import de.dosmike.sponge.megamenus.api.state.StateObject;
+import de.dosmike.sponge.megamenus.api.state.StateStore;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.scheduler.Task;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages the player states of all menus. For persistent menus changed states are encoded
+ * periodically on the server thread and written by a single background thread, in the
+ * order they were collected. States are loaded by the same thread when a player joins.
+ * States of offline players are removed from memory after they were idle for some time
+ * and are loaded again when requested.<br>
+ * The retention policy bounds the player states of menus that are not persistent: states
+ * of offline players are discarded after some time, when a menu holds too many states
+ * or when the player disconnects.
+ */
+final public class StateStorage {
+
+    /** eviction reason: the state was not accessed for too long */
+    public static final String EVICTION_IDLE = "idle";
+    /** eviction reason: the menu had more states than allowed */
+    public static final String EVICTION_LIMIT = "limit";
+    /** eviction reason: the player disconnected */
+    public static final String EVICTION_DISCONNECT = "disconnect";
+
+    private static StateStore store = null;
+    /** the player states of all menus */
+    private static Set<PlayerStates> states = Collections.newSetFromMap(new WeakHashMap<>());
+    /** encoded states handed to the writer that are not yet written: name -&gt; player -&gt; state, empty if deleted */
+    private static Map<String, Map<UUID, Optional<byte[]>>> pending = new HashMap<>();
+    /** amount of deletes handed to the writer per name, that are not yet done */
+    private static Map<String, Integer> clearing = new HashMap<>();
+    private static ExecutorService writer = null;
+
+    private static long flushInterval = TimeUnit.SECONDS.toMillis(30);
+    private static long idleTimeout = TimeUnit.MINUTES.toMillis(10);
+    private static long discardTimeout = TimeUnit.MINUTES.toMillis(60);
+    private static int maxEntries = 10000;
+    private static boolean dropOnDisconnect = false;
+    private static long lastFlush = System.currentTimeMillis();
+    /** evictions per reason since the server started */
+    private static Map<String, Long> evictions = new TreeMap<>();
+    /** evictions since the last log message */
+    private static long unreported = 0L;
+
+    /**
+     * Replace the store persistent menus use. Should be set before any persistent menu is used.
+     * @param stateStore the new store
+     */
+    public static void setStore(StateStore stateStore) {
+        store = stateStore;
+    }
+    /**
+     * @return the current store, by default a {@link FileStateStore} within the saves directory
+     */
+    public static StateStore getStore() {
+        if (store == null)
+            store = new FileStateStore(Sponge.getGame().getSavesDirectory().resolve("megamenus").resolve("states"));
+        return store;
+    }
+    /**
+     * @param flushSeconds how often changed states are written
+     * @param idleMinutes how long states of offline players are kept in memory after the last access
+     */
+    public static void configure(int flushSeconds, int idleMinutes) {
+        flushInterval = TimeUnit.SECONDS.toMillis(Math.max(1, flushSeconds));
+        idleTimeout = TimeUnit.MINUTES.toMillis(Math.max(0, idleMinutes));
+    }
+    /**
+     * Configures the retention policy for menus that are not persistent. Evicted states are lost.
+     * @param discardMinutes discard states of offline players not accessed for this long, 0 to keep them
+     * @param maxStates the amount of states per menu, least recently used states of offline
+     *                  players are evicted first. This also applies to persistent menus, 0 for no limit
+     * @param dropDisconnected evict the states of players as they disconnect
+     */
+    public static void configureRetention(int discardMinutes, int maxStates, boolean dropDisconnected) {
+        discardTimeout = TimeUnit.MINUTES.toMillis(Math.max(0, discardMinutes));
+        maxEntries = Math.max(0, maxStates);
+        dropOnDisconnect = dropDisconnected;
+    }
+    static int getMaxEntries() {
+        return maxEntries;
+    }
+
+    static void register(PlayerStates playerStates) {
+        states.add(playerStates);
+    }
+    static boolean isOnline(UUID player) {
+        return Sponge.isServerAvailable() && Sponge.getServer().getPlayer(player).isPresent();
+    }
+
+    static void reportEvictions(String reason, int amount) {
+        if (amount <= 0) return;
+        evictions.merge(reason, (long) amount, Long::sum);
+        unreported += amount;
+    }
+    /**
+     * @return the amount of evicted player states by reason since the server started
+     */
+    public static Map<String, Long> getEvictions() {
+        return Collections.unmodifiableMap(new TreeMap<>(evictions));
+    }
+
+    /**
+     * Called when a player leaves the server, evicts the players states if configured
+     * @param player the player that disconnected
+     */
+    public static void playerDisconnected(UUID player) {
+        if (!dropOnDisconnect) return;
+        int evicted = 0;
+        for (PlayerStates playerStates : states)
+            if (playerStates.evictPlayer(player)) evicted++;
+        reportEvictions(EVICTION_DISCONNECT, evicted);
+    }
+
+    /**
+     * Called when a player joins the server, loads the players states of all persistent menus
+     * in the background. This way states don't have to be loaded on the server thread,
+     * when the player opens a menu. As the writer loads the states, all batches handed
+     * to the writer before are already written.
+     * @param player the player that joined
+     */
+    public static void playerJoined(UUID player) {
+        for (PlayerStates playerStates : states) {
+            if (!playerStates.needsLoading(player)) continue;
+            String name = playerStates.getPersistentName();
+            getWriter().execute(()->{
+                StateObject loaded;
+                try {
+                    loaded = getStore().load(name, player).orElse(null);
+                } catch (IOException e) {
+                    MegaMenus.w("Could not load state of %s for menu %s: %s", player.toString(), name, e.getMessage());
+                    return;
+                }
+                runOnServer(()->{
+                    //states handed to the writer or deleted since are more recent
+                    Map<UUID, Optional<byte[]>> unwritten = pending.get(name);
+                    if ((unwritten != null && unwritten.containsKey(player)) || clearing.containsKey(name) ||
+                            !name.equals(playerStates.getPersistentName()))
+                        return;
+                    playerStates.loaded(player, loaded);
+                });
+            });
+        }
+    }
+
+    /**
+     * Loads a state from the store, or from the states not yet written
+     * @return the state or null if none was stored
+     */
+    static StateObject load(String name, UUID player) {
+        Map<UUID, Optional<byte[]>> unwritten = pending.get(name);
+        if (unwritten != null && unwritten.containsKey(player))
+            return unwritten.get(player).map(data->decode(name, player, data)).orElse(null);
+        //the store still holds the states that are about to be deleted
+        if (clearing.containsKey(name))
+            return null;
+        try {
+            return getStore().load(name, player).orElse(null);
+        } catch (IOException e) {
+            MegaMenus.w("Could not load state of %s for menu %s: %s", player.toString(), name, e.getMessage());
+            return null;
+        }
+    }
+    private static StateObject decode(String name, UUID player, byte[] data) {
+        try {
+            return StateCodec.read(new ByteArrayInputStream(data));
+        } catch (IOException e) {
+            MegaMenus.w("Could not load state of %s for menu %s: %s", player.toString(), name, e.getMessage());
+            return null;
+        }
+    }
+    /**
+     * Deletes all stored states after batches already handed to the writer were written.
+     * States not yet handed to the writer are dropped.
+     */
+    static void deleteAll(String name) {
+        pending.remove(name);
+        clearing.merge(name, 1, Integer::sum);
+        getWriter().execute(()->{
+            try {
+                getStore().deleteAll(name);
+            } catch (IOException e) {
+                MegaMenus.w("Could not delete states for menu %s: %s", name, e.getMessage());
+            }
+            runOnServer(()->clearing.computeIfPresent(name, (k, v)->v > 1 ? v-1 : null));
+        });
+    }
+
+    /**
+     * Called every second from the server thread, saves changes once the flush interval
+     * passed and evicts idle states
+     */
+    public static void tick() {
+        long now = System.currentTimeMillis();
+        if (now - lastFlush < flushInterval) return;
+        lastFlush = now;
+        flush();
+        int evicted = 0;
+        for (PlayerStates playerStates : states) {
+            if (playerStates.getPersistentName() != null)
+                evicted += playerStates.evictIdle(now - idleTimeout, StateStorage::isOnline);
+            else if (discardTimeout > 0)
+                evicted += playerStates.evictIdle(now - discardTimeout, StateStorage::isOnline);
+        }
+        reportEvictions(EVICTION_IDLE, evicted);
+        if (unreported > 0) {
+            MegaMenus.l("Evicted %d player states from menus (%s)", unreported, evictions.toString());
+            unreported = 0L;
+        }
+    }
+
+    /**
+     * Hands all changed states to the background writer
+     */
+    public static void flush() {
+        for (PlayerStates playerStates : states) {
+            String name = playerStates.getPersistentName();
+            if (name == null) continue;
+            //one broken menu must not keep the other menus from saving
+            try {
+                flush(name, playerStates);
+            } catch (RuntimeException e) {
+                MegaMenus.w("Could not save player states for menu %s: %s", name, e.toString());
+            }
+        }
+    }
+    private static void flush(String name, PlayerStates playerStates) {
+        Map<UUID, byte[]> saves = new HashMap<>();
+        Set<UUID> deletes = new HashSet<>();
+        playerStates.collectChanges(saves, deletes);
+        if (saves.isEmpty() && deletes.isEmpty()) return;
+        Map<UUID, Optional<byte[]>> unwritten = pending.computeIfAbsent(name, k->new HashMap<>());
+        Map<UUID, Optional<byte[]>> batch = new HashMap<>();
+        deletes.forEach(player->batch.put(player, Optional.empty()));
+        saves.forEach((player, data)->batch.put(player, Optional.of(data)));
+        unwritten.putAll(batch);
+        getWriter().execute(()->write(name, batch));
+    }
+    private static void write(String name, Map<UUID, Optional<byte[]>> batch) {
+        StateStore target = getStore();
+        Map<UUID, byte[]> saves = new HashMap<>();
+        try {
+            for (Map.Entry<UUID, Optional<byte[]>> e : batch.entrySet()) {
+                if (e.getValue().isPresent()) {
+                    saves.put(e.getKey(), e.getValue().get());
+                } else {
+                    target.delete(name, e.getKey());
+                }
+            }
+            target.saveAllEncoded(name, saves);
+        } catch (IOException | RuntimeException e) {
+            MegaMenus.w("Could not save player states for menu %s: %s", name, e.toString());
+        }
+        //forget the pending states unless they were replaced by a newer batch
+        runOnServer(()->{
+            Map<UUID, Optional<byte[]>> unwritten = pending.get(name);
+            if (unwritten == null) return;
+            batch.forEach((player, state)->unwritten.remove(player, state));
+            if (unwritten.isEmpty()) pending.remove(name);
+        });
+    }
+    /** runs the task on the server thread, if the server is still running */
+    private static void runOnServer(Runnable task) {
+        if (MegaMenus.getInstance() != null && Sponge.isServerAvailable() && !writer.isShutdown())
+            Task.builder().execute(task).submit(MegaMenus.getInstance());
+    }
+    private static synchronized ExecutorService getWriter() {
+        if (writer == null || writer.isShutdown())
+            writer = Executors.newSingleThreadExecutor(r->{
+                Thread thread = new Thread(r, "MegaMenus State Writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        return writer;
+    }
+
+    /**
+     * Writes all changed states and waits for the writer to finish
+     */
+    public static void shutdown() {
+        flush();
+        if (writer == null) return;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS))
+                MegaMenus.w("Timed out while saving player states");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.clear();
+        clearing.clear();
+    }
+
+}
@@ -21,6 +21,10 @@ public abstract class TextMenuRenderer extends AbstractMenuRenderer {
     /** text menus are not able to listen for clicks on other buttons
      * and can't read if shift was held */
     public void delegateClickEvent(IElement element, Player viewer) {
+        RenderManager.prioritize(this);
+        //bound menus copy elements before they might change
+        if (menu instanceof BoundMenuImpl)
+            element = ((BoundMenuImpl) menu).materialize(element);
         if (element instanceof IClickable) {
             ((IClickable)element).fireClickEvent(viewer, MouseEvent.BUTTON1, false);
         }
@@ -0,0 +1,127 @@
+package de.dosmike.sponge.megamenus.impl;
+
+import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
+
+import java.util.*;
+
+/**
+ * Timing wheel of the elements a renderer displays, bucketed by the render cycle they have
+ * to think in next, as reported by {@link IElement#getNextThink}.
+ * Draining a cycle only visits the elements due in that cycle, elements that never animate
+ * are not placed in the wheel at all.
+ */
+final class ThinkSchedule {
+
+    /** amount of slots in the wheel, elements due further ahead are skipped on every round until due */
+    private static final int WHEEL_SIZE = 64;
+
+    static final class Entry {
+        final IElement element;
+        /** the page the element is displayed on, 0 if all pages are displayed */
+        final int page;
+        /** the cycle this element has to think in next */
+        long due = Long.MAX_VALUE;
+        /** the cycle of the wheel slot this element is placed in, -1 if not placed */
+        long placed = -1L;
+        /** whether this element waits in the list of invalidated elements */
+        boolean pending = false;
+        Entry(IElement element, int page) {
+            this.element = element;
+            this.page = page;
+        }
+    }
+
+    private final Map<IElement, Entry> entries = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    private final List<Entry>[] wheel = new List[WHEEL_SIZE];
+    /** the last cycle that was drained */
+    private long drained = -1L;
+    /** elements that were invalidated and think in the next drained cycle */
+    private List<Entry> pending = new ArrayList<>();
+
+    ThinkSchedule() {
+        for (int i = 0; i < WHEEL_SIZE; i++)
+            wheel[i] = new ArrayList<>();
+    }
+
+    /** forget all elements, they have to be added again */
+    void clear() {
+        entries.clear();
+        for (List<Entry> slot : wheel) slot.clear();
+        pending.clear();
+    }
+
+    /**
+     * Starts tracking the element, it will think when the cycle is drained
+     * @param element the element to track
+     * @param page the page the element is displayed on, 0 for all pages
+     * @param cycle the current render cycle
+     */
+    void add(IElement element, int page, long cycle) {
+        Entry entry = new Entry(element, page);
+        entries.put(element, entry);
+        schedule(entry, cycle);
+    }
+
+    /**
+     * Lets the element think in the next drained cycle, e.g. because its icon might have changed.
+     * Elements that are not tracked are ignored.
+     */
+    void wake(IElement element) {
+        Entry entry = entries.get(element);
+        if (entry != null && !entry.pending) {
+            entry.pending = true;
+            pending.add(entry);
+        }
+    }
+
+    /**
+     * Places the element in the wheel slot for the cycle it's due, replacing any previous placement
+     * @param entry the element to place
+     * @param due the cycle this element has to think in, Long.MAX_VALUE to not think anymore
+     */
+    void schedule(Entry entry, long due) {
+        entry.due = due;
+        if (due == Long.MAX_VALUE) {
+            entry.placed = -1L;
+            return;
+        }
+        //due further ahead than one round, or overdue
+        long slot = Math.max(drained + 1, Math.min(due, drained + WHEEL_SIZE));
+        entry.placed = slot;
+        wheel[(int) (slot % WHEEL_SIZE)].add(entry);
+    }
+
+    /**
+     * Collects all elements due in this or skipped cycles. The elements have to be scheduled
+     * again after they thought, or they won't think anymore.
+     * @param cycle the current render cycle
+     * @return the elements that have to think now
+     */
+    List<Entry> drain(long cycle) {
+        List<Entry> due = new ArrayList<>();
+        for (Entry entry : pending) {
+            entry.pending = false;
+            entry.placed = -1L;
+            due.add(entry);
+        }
+        pending = new ArrayList<>();
+        long from = Math.max(drained + 1, cycle - WHEEL_SIZE + 1);
+        long last = drained;
+        drained = cycle;
+        for (long c = from; c <= cycle; c++) {
+            List<Entry> slot = wheel[(int) (c % WHEEL_SIZE)];
+            if (slot.isEmpty()) continue;
+            wheel[(int) (c % WHEEL_SIZE)] = new ArrayList<>();
+            for (Entry entry : slot) {
+                //moved to another slot or already collected
+                if (entry.placed <= last || entry.placed > cycle) continue;
+                entry.placed = -1L;
+                if (entry.due > cycle) schedule(entry, entry.due);
+                else due.add(entry);
+            }
+        }
+        return due;
+    }
+
+}
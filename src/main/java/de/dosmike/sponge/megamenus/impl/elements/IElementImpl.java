@@ -8,19 +8,20 @@ import de.dosmike.sponge.megamenus.api.elements.IIcon;
 import de.dosmike.sponge.megamenus.api.elements.PositionProvider;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
 import de.dosmike.sponge.megamenus.api.util.Tickable;
+import de.dosmike.sponge.megamenus.api.util.ViewerIndependent;
 import de.dosmike.sponge.megamenus.exception.ObjectBuilderException;
 import de.dosmike.sponge.megamenus.impl.AnimationManager;
+import de.dosmike.sponge.megamenus.impl.BaseMenuImpl;
+import de.dosmike.sponge.megamenus.impl.BoundMenuImpl;
+import de.dosmike.sponge.megamenus.impl.GuiRenderer;
 import de.dosmike.sponge.megamenus.impl.RenderManager;
-import de.dosmike.sponge.megamenus.impl.util.MenuUtil;
+import de.dosmike.sponge.megamenus.impl.util.IconStackCache;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.spongepowered.api.data.key.Keys;
 import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.item.ItemTypes;
 import org.spongepowered.api.item.inventory.Inventory;
-import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
 import org.spongepowered.api.item.inventory.property.SlotPos;
-import org.spongepowered.api.text.Text;
 
 import java.util.*;
 
@@ -52,8 +53,15 @@ public abstract class IElementImpl implements IElement {
     public void setPosition(@Nullable SlotPos position) {
         if (parent != null && position == null)
             throw new IllegalStateException("You can not use PositionProviders with this element anymore, it's already added to a menu.");
+        //the old slots have to be repainted as well, as they might be uncovered now
+        if (parent != null && pos != null) invalidate();
         //copy position, in case the caller wants to manipulate the input in a loop or something
         this.pos = position != null ? new SlotPos(position.getX(), position.getY()) : null;
+        if (parent instanceof BaseMenuImpl)
+            ((BaseMenuImpl) parent).updatePosition(this);
+        else if (parent instanceof BoundMenuImpl)
+            ((BoundMenuImpl) parent).updatePosition(this);
+        if (parent != null) invalidate();
     }
 
     /**
@@ -72,6 +80,15 @@ public abstract class IElementImpl implements IElement {
         return parent;
     }
 
+    /** the last item rendered for this element, as long as icon, name, lore and access don't change */
+    private final IconStackCache renderCache = new IconStackCache();
+    /** name and lore may differ per viewer, unless the element is {@link ViewerIndependent} */
+    private final Map<Player, IconStackCache> viewerRenderCaches = new WeakHashMap<>();
+    private IconStackCache getRenderCache(Player viewer) {
+        if (this instanceof ViewerIndependent) return renderCache;
+        return viewerRenderCaches.computeIfAbsent(viewer, k->new IconStackCache());
+    }
+
     @Override
     public Collection<SlotPos> renderGUI(Player viewer)  {
         Inventory view = viewer.getOpenInventory().get(); //when is this not present?
@@ -95,62 +112,27 @@ public abstract class IElementImpl implements IElement {
             return Collections.emptyList();
         }
         Optional<IMenu> menu = renderer.map(MenuRenderer::getMenu);
-        if ((!menu.isPresent() || !menu.get().equals(getParent()))) {
+        if ((!menu.isPresent() || !(menu.get().equals(getParent()) ||
+                (menu.get() instanceof BoundMenuImpl && ((BoundMenuImpl) menu.get()).isShared(this))))) {
             MegaMenus.w("Menu was closed or changed during render");
             AntiGlitch.calloutGlitcher(viewer);
             return Collections.emptyList();
         }
-        //convert position to index because slots seem to only retain index
-        SlotPos renderAt = getPosition();
-        //if (renderAt == null) getParent()
+        if (!(renderer.get() instanceof GuiRenderer)) {
+            return Collections.emptyList();
+        }
         IIcon icon = getIcon(viewer);
         if (icon != null) {
-            Inventory slot = MenuUtil.getSlotByAnyMeans(view, getPosition()).orElse(null);
-            if (slot == null || slot.capacity() == 0) {
-                MegaMenus.w("No slot matched position %d,%d", getPosition().getX(), getPosition().getY());
-            } else {
-                ItemStack.Builder builder = ItemStack.builder().fromSnapshot(icon.render());
-                {
-                    Text name = getName(viewer);
-                    if (name != null)
-                        builder.add(Keys.DISPLAY_NAME, name);
-                }
-                {
-                    List<Text> lore = getLore(viewer);
-                    if (lore != null)
-                        builder.add(Keys.ITEM_LORE, getLore(viewer));
-                }
-                ItemStack render;
-                if ((getAccess() & GUI_ACCESS_TAKE)>0) {
-                    render = builder.build();
-                } else { //The user is not allowed to take items from this slot
-                    //Inject some custom NBT to be able to detect these again
-                    render = ItemStack.builder()
-                            .fromContainer(builder.build().toContainer()
-                                    .set(AntiGlitch.inject, true)
-                            ).build();
-                }
-                if (!exequalitemstack(slot.peek().orElse(ItemStack.empty()),render)) {//stack did change
-                    // ignore this if unchanged in order to save network
-                    // - less slot transaction are more! :D
-                    if (render.getQuantity() == 0 ||
-                        render.getType().equals(ItemTypes.AIR)) {
-                        slot.clear(); //because setting air / empty stacks does nothing
-                    } else {
-                        slot.set(render);
-                    }
-                }
-            }
+            //The user is not allowed to take items from this slot if access is missing
+            ItemStackSnapshot render = getRenderCache(viewer).get(icon.render(),
+                    getName(viewer), getLore(viewer),
+                    (getAccess() & GUI_ACCESS_TAKE) == 0);
+            // the renderer skips this if unchanged in order to save network
+            // - less slot transaction are more! :D
+            ((GuiRenderer) renderer.get()).paintSlot(viewer, getPosition(), render);
         }
         return Collections.singleton(getPosition());
     }
-    /**
-     * Properly checks for empty stacks
-     */
-    private boolean exequalitemstack(ItemStack a, ItemStack b) {
-        if (a.getQuantity() == 0 && b.getQuantity() == 0) return true;
-        return a.equalTo(b);
-    }
 
     @Override
     public void validateGui(int pageHeight) throws ObjectBuilderException {
@@ -175,4 +157,12 @@ public abstract class IElementImpl implements IElement {
         if (icon != null) hookChange |= animations.singleTick(icon);
         return hookChange;
     }
+
+    @Override
+    public long getNextThink(AnimationManager animations, Player viewer) {
+        long next = thinkHook != null ? animations.getDueCycle(thinkHook) : Long.MAX_VALUE;
+        IIcon icon = getIcon(viewer);
+        if (icon != null) next = Math.min(next, animations.getDueCycle(icon));
+        return next;
+    }
 }
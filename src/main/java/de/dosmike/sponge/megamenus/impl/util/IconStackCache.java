@@ -0,0 +1,78 @@
+package de.dosmike.sponge.megamenus.impl.util;
+
+import com.google.common.collect.ImmutableList;
+import de.dosmike.sponge.megamenus.AntiGlitch;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.api.data.key.Keys;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
+import org.spongepowered.api.text.Text;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Remembers the last item built from an icon frame, display name, lore and access.
+ * Building an item with display data and the anti glitch marker requires a full
+ * DataContainer round trip, so the item is only rebuilt if one of these inputs changed.<br>
+ * As long as the inputs don't change the very same snapshot instance is returned.<br>
+ * Caches are only used from the server thread and hold a single item, so name and lore
+ * that differ per viewer require one cache per viewer.
+ */
+final public class IconStackCache {
+
+    private ItemStackSnapshot frame = null;
+    private Text name = null;
+    private List<Text> lore = null;
+    private boolean inject = false;
+    private ItemStackSnapshot result = null;
+
+    /**
+     * @param frame the current frame of the icon
+     * @param name the display name to set or null to keep the item name
+     * @param lore the lore to set or null to keep the item lore
+     * @param inject true to mark the item with {@link AntiGlitch#inject}, required if
+     *               the item can not be taken by the player
+     * @return the item to display
+     */
+    public ItemStackSnapshot get(ItemStackSnapshot frame, @Nullable Text name, @Nullable List<Text> lore, boolean inject) {
+        if (result != null && inject == this.inject &&
+                (frame == this.frame || frame.equals(this.frame)) &&
+                Objects.equals(name, this.name) &&
+                Objects.equals(lore, this.lore)) {
+            return result;
+        }
+        ItemStack.Builder builder = ItemStack.builder().fromSnapshot(frame);
+        if (name != null)
+            builder.add(Keys.DISPLAY_NAME, name);
+        if (lore != null)
+            builder.add(Keys.ITEM_LORE, lore);
+        ItemStack render;
+        if (!inject) {
+            render = builder.build();
+        } else { //The user is not allowed to take items from this slot
+            //Inject some custom NBT to be able to detect these again
+            render = ItemStack.builder()
+                    .fromContainer(builder.build().toContainer()
+                            .set(AntiGlitch.inject, true)
+                    ).build();
+        }
+        this.frame = frame;
+        this.name = name;
+        this.lore = lore == null ? null : ImmutableList.copyOf(lore);
+        this.inject = inject;
+        this.result = render.createSnapshot();
+        return result;
+    }
+
+    /**
+     * Forget the cached item, the next request will rebuild it
+     */
+    public void clear() {
+        frame = null;
+        name = null;
+        lore = null;
+        result = null;
+    }
+
+}
@@ -0,0 +1,202 @@
+package de.dosmike.sponge.megamenus.impl.util;
+
+import de.dosmike.sponge.megamenus.api.IMenu;
+import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
+import de.dosmike.sponge.megamenus.impl.BoundMenuImpl;
+import org.spongepowered.api.text.Text;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects call counts and execution times for the expensive parts of menu rendering.
+ * Every operation is recorded per subject, where a subject is either a menu (by id, shown
+ * with its title) or a element type (by class name), so it's possible to find out what menu or element
+ * is costing the server time.<br>
+ * Recording is disabled by default, while disabled measuring an operation costs no more
+ * than a volatile read.
+ */
+public final class MenuMetrics {
+
+    public static final String REDRAW = "redraw";
+    public static final String THINK = "think";
+    public static final String INTERACT = "interact";
+    public static final String RENDER_GUI = "renderGUI";
+    public static final String SCAN_INVENTORY = "scanInventory";
+
+    /** upper bounds in microseconds for all but the last histogram bucket, the last bucket is unbounded */
+    public static final long[] BUCKET_BOUNDS = { 10L, 100L, 1000L, 10000L };
+
+    /**
+     * Execution statistics for one operation on one subject
+     */
+    public static final class Stat {
+        private long count = 0L;
+        private long totalNanos = 0L;
+        private long maxNanos = 0L;
+        private final long[] histogram = new long[BUCKET_BOUNDS.length+1];
+
+        private Stat() {}
+        private Stat(Stat other) {
+            count = other.count;
+            totalNanos = other.totalNanos;
+            maxNanos = other.maxNanos;
+            System.arraycopy(other.histogram, 0, histogram, 0, histogram.length);
+        }
+        /** merges the other stat into this one, used if two subjects have the same name */
+        private Stat merge(Stat other) {
+            count += other.count;
+            totalNanos += other.totalNanos;
+            maxNanos = Math.max(maxNanos, other.maxNanos);
+            for (int i = 0; i < histogram.length; i++)
+                histogram[i] += other.histogram[i];
+            return this;
+        }
+        private void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) maxNanos = nanos;
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && micros >= BUCKET_BOUNDS[bucket]) bucket++;
+            histogram[bucket]++;
+        }
+
+        /** @return the number of times this operation was recorded */
+        public long getCount() {
+            return count;
+        }
+        /** @return the summed up time spent in this operation in nano seconds */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+        /** @return the average time spent per call in nano seconds */
+        public long getAverageNanos() {
+            return count == 0L ? 0L : totalNanos / count;
+        }
+        /** @return the longest time a single call took in nano seconds */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+        /** @return amount of calls per bucket, as bounded by {@link #BUCKET_BOUNDS} */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+    }
+
+    /** menus are recorded by id, as different menus can have the same title */
+    private static final class MenuSubject {
+        final UUID id;
+        /** the title when the menu was last recorded */
+        Text title;
+        MenuSubject(UUID id) {
+            this.id = id;
+        }
+    }
+    /** operation -&gt; subject -&gt; stat, subjects are menus, element classes or names */
+    private static final Map<String, Map<Object, Stat>> stats = new HashMap<>();
+    /** the subject for every menu id recorded */
+    private static final Map<UUID, MenuSubject> menus = new HashMap<>();
+    private static volatile boolean enabled = false;
+
+    /**
+     * @param enable whether operations should be recorded from now on
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+    /**
+     * @return true if operations are currently recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    /**
+     * Call this when an operation starts and pass the result to record
+     * @return the value of {@link System#nanoTime()}, or 0 if metrics are disabled
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the time since start for the operation on the menu
+     * @param operation what was measured
+     * @param menu the menu the operation was performed for
+     * @param startNanos the value of {@link #start()} when the operation started
+     */
+    public static void record(String operation, IMenu menu, long startNanos) {
+        if (startNanos == 0L || !enabled) return;
+        //bound menus are recorded for their base menu, serializing the title is left to getStats
+        IMenu subject = menu instanceof BoundMenuImpl ? ((BoundMenuImpl) menu).getBaseMenu() : menu;
+        UUID id = subject.getUniqueId();
+        if (id == null) id = new UUID((long) System.identityHashCode(subject) << 32, 0L);
+        recordMenu(operation, id, subject.getTitle(), startNanos);
+    }
+    private static synchronized void recordMenu(String operation, UUID id, Text title, long startNanos) {
+        MenuSubject subject = menus.computeIfAbsent(id, MenuSubject::new);
+        subject.title = title;
+        recordSubject(operation, subject, startNanos);
+    }
+    /**
+     * Records the time since start for the operation on the type of element
+     * @param operation what was measured
+     * @param element the element the operation was performed for
+     * @param startNanos the value of {@link #start()} when the operation started
+     */
+    public static void record(String operation, IElement element, long startNanos) {
+        if (startNanos == 0L || !enabled) return;
+        recordSubject(operation, element.getClass(), startNanos);
+    }
+    /**
+     * Records the time since start for the operation on the subject
+     * @param operation what was measured
+     * @param subject a name for what the operation was performed on
+     * @param startNanos the value of {@link #start()} when the operation started
+     */
+    public static void record(String operation, String subject, long startNanos) {
+        if (startNanos == 0L || !enabled) return;
+        recordSubject(operation, subject, startNanos);
+    }
+    private static synchronized void recordSubject(String operation, Object subject, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        stats.computeIfAbsent(operation, k->new HashMap<>())
+                .computeIfAbsent(subject, k->new Stat())
+                .add(nanos);
+    }
+
+    /**
+     * @return a copy of all statistics recorded since the last reset as operation -&gt; subject -&gt; stat
+     */
+    public static synchronized Map<String, Map<String, Stat>> getStats() {
+        Map<String, Map<String, Stat>> copy = new TreeMap<>();
+        for (Map.Entry<String, Map<Object, Stat>> operation : stats.entrySet()) {
+            Map<String, Stat> subjects = new TreeMap<>();
+            for (Map.Entry<Object, Stat> subject : operation.getValue().entrySet())
+                subjects.merge(label(subject.getKey()), new Stat(subject.getValue()), Stat::merge);
+            copy.put(operation.getKey(), Collections.unmodifiableMap(subjects));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static String label(Object subject) {
+        if (subject instanceof MenuSubject) {
+            MenuSubject menu = (MenuSubject) subject;
+            return "menu '"+menu.title.toPlain()+"' ("+menu.id.toString().substring(0, 8)+")";
+        } else if (subject instanceof Class) {
+            //anonymous classes have no simple name
+            Class<?> type = (Class<?>) subject;
+            return type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName();
+        } else
+            return subject.toString();
+    }
+
+    /**
+     * Discards all statistics recorded so far
+     */
+    public static synchronized void reset() {
+        stats.clear();
+        menus.clear();
+    }
+
+}
@@ -5,6 +5,8 @@ import de.dosmike.sponge.megamenus.api.IMenu;
 import de.dosmike.sponge.megamenus.api.MenuRenderer;
 import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
 import de.dosmike.sponge.megamenus.api.elements.concepts.ISizeable;
+import de.dosmike.sponge.megamenus.impl.BaseMenuImpl;
+import de.dosmike.sponge.megamenus.impl.BoundMenuImpl;
 import de.dosmike.sponge.megamenus.impl.RenderManager;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.item.inventory.Inventory;
@@ -29,6 +31,10 @@ final public class MenuUtil {
      * @return all elements that occupy pos on the given page in the menu
      */
     public static Set<IElement> getAllElementsAt(IMenu menu, int page, SlotPos pos) {
+        if (menu instanceof BaseMenuImpl)
+            return ((BaseMenuImpl) menu).getElementsAt(page, pos);
+        else if (menu instanceof BoundMenuImpl)
+            return ((BoundMenuImpl) menu).getElementsAt(page, pos);
         Collection<IElement> pageElements = menu.getPageElements(page);
         return pageElements.stream()
                 .filter(e -> ((e instanceof ISizeable) && ((ISizeable)e).containsPosition(pos)) || e.getPosition().equals(pos))
@@ -43,12 +49,77 @@ final public class MenuUtil {
      * @return a single element that occupies pos on the given page in the menu, or empty if no element was present
      */
     public static Optional<IElement> getElementAt(IMenu menu, int page, SlotPos pos) {
+        if (menu instanceof BaseMenuImpl || menu instanceof BoundMenuImpl) {
+            Set<IElement> elements = getAllElementsAt(menu, page, pos);
+            return elements.isEmpty() ? Optional.empty() : Optional.of(elements.iterator().next());
+        }
         Collection<IElement> pageElements = menu.getPageElements(page);
         return pageElements.stream()
                 .filter(e -> ((e instanceof ISizeable) && ((ISizeable)e).containsPosition(pos)) || e.getPosition().equals(pos))
                 .findFirst();
     }
 
+    /** Returns the elements on a page as they are rendered. Other than {@link IMenu#getPageElements(int)} this
+     * does not copy elements a {@link BoundMenuImpl} still shares with its base menu, so the result is
+     * only meant to be read. Use {@link BoundMenuImpl#materialize(IElement)} before changing an element.
+     * @param menu the menu to get elements from
+     * @param page the page to get elements for
+     * @return all elements on the given page in the menu
+     */
+    public static Collection<IElement> getRenderElements(IMenu menu, int page) {
+        if (menu instanceof BoundMenuImpl)
+            return ((BoundMenuImpl) menu).peekPageElements(page);
+        return menu.getPageElements(page);
+    }
+
+    /** Performs the same lookup as getAllElementsAt, without copying elements a {@link BoundMenuImpl} still
+     * shares with its base menu. Use {@link BoundMenuImpl#materialize(IElement)} before changing an element.
+     * @param menu the menu to search for elements
+     * @param page the page to search
+     * @param pos the x and y coordinates to search for elements
+     * @return all elements that occupy pos on the given page in the menu
+     */
+    public static Set<IElement> getRenderElementsAt(IMenu menu, int page, SlotPos pos) {
+        if (menu instanceof BoundMenuImpl)
+            return ((BoundMenuImpl) menu).peekElementsAt(page, pos);
+        return getAllElementsAt(menu, page, pos);
+    }
+
+    /** A slot mask with all 9x6 slots of a menu grid set */
+    public static final long ALL_SLOTS = (1L << 54) - 1;
+
+    /**
+     * Slot masks represent a set of slots in a 9x6 menu grid, where the bit at index y*9+x
+     * is set for every slot in the set.
+     * @param pos the x and y coordinates of the slot
+     * @return the mask containing only this slot, or 0 if the position is outside the grid
+     */
+    public static long getSlotBit(SlotPos pos) {
+        if (pos == null || pos.getX() < 0 || pos.getX() >= 9 || pos.getY() < 0 || pos.getY() >= 6)
+            return 0L;
+        return 1L << (pos.getY() * 9 + pos.getX());
+    }
+
+    /**
+     * Computes the slot mask of all slots occupied by this element, respecting the size
+     * of {@link ISizeable} elements.
+     * @param element the element to get the occupied slots for
+     * @return the slot mask for the element, or 0 if it has no position
+     * @see #getSlotBit(SlotPos)
+     */
+    public static long getSlotMask(IElement element) {
+        SlotPos pos = element.getPosition();
+        if (pos == null) return 0L;
+        if (!(element instanceof ISizeable)) return getSlotBit(pos);
+        int maxX = Math.min(9, pos.getX() + ((ISizeable) element).getWidth());
+        int maxY = Math.min(6, pos.getY() + ((ISizeable) element).getHeight());
+        long mask = 0L;
+        for (int y = Math.max(0, pos.getY()); y < maxY; y++)
+            for (int x = Math.max(0, pos.getX()); x < maxX; x++)
+                mask |= 1L << (y * 9 + x);
+        return mask;
+    }
+
     /**
      * Closing the menu 1 tick later prevents item duping.<br>
      * In order to close all other views (like books that normally don't have a close-method)
@@ -90,6 +161,10 @@ final public class MenuUtil {
      * <li>Query the SlotIndex as y*9+x
      * <li>Stream the Slots for the first Slot that contains a correct SlotIndex
      * </ul>
+     * Results are not cached, every call queries the inventory again. The
+     * {@link de.dosmike.sponge.megamenus.impl.GuiRenderer} resolves the slots of a menu inventory
+     * once per opened container and only falls back to this method for slots without SlotIndex,
+     * so keep the returned slot if you need it repeatedly.
      * @param inventory the inventory to search the slot in
      * @param pos the Grid Position to search
      * @return the first Slot with the matching pos upcast as Inventory as returned by the inventory query
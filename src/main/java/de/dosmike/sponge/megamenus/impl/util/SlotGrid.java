@@ -0,0 +1,89 @@
+package de.dosmike.sponge.megamenus.impl.util;
+
+import com.google.common.collect.ImmutableSet;
+import de.dosmike.sponge.megamenus.api.elements.concepts.IElement;
+import org.spongepowered.api.item.inventory.property.SlotPos;
+
+import java.util.*;
+
+/**
+ * Occupancy grid for a single menu page. Each of the 9x6 slots knows the elements
+ * occupying it, so looking up elements at a position is a single array read.<br>
+ * The sets per slot are immutable and replaced on change, so they can be handed out and
+ * iterated while elements are added, moved or removed.
+ */
+final public class SlotGrid {
+
+    @SuppressWarnings("unchecked")
+    private final Set<IElement>[] cells = new Set[54];
+    /** the slot mask every element was put into the grid with */
+    private final Map<IElement, Long> masks = new HashMap<>();
+
+    /**
+     * Put the element into all slots it occupies at its current position
+     * @param element the element that was added to the page
+     */
+    public void add(IElement element) {
+        long mask = MenuUtil.getSlotMask(element);
+        if (mask == 0L) return;
+        masks.put(element, mask);
+        for (; mask != 0L; mask &= mask-1) {
+            int index = Long.numberOfTrailingZeros(mask);
+            cells[index] = ImmutableSet.<IElement>builder().addAll(cell(index)).add(element).build();
+        }
+    }
+
+    /**
+     * Remove the element from all slots it was put into
+     * @param element the element that was removed from the page
+     */
+    public void remove(IElement element) {
+        Long mask = masks.remove(element);
+        if (mask == null) return;
+        for (long bits = mask; bits != 0L; bits &= bits-1) {
+            int index = Long.numberOfTrailingZeros(bits);
+            Set<IElement> cell = cell(index);
+            if (cell.size() <= 1) {
+                cells[index] = null;
+            } else {
+                ImmutableSet.Builder<IElement> builder = ImmutableSet.builder();
+                for (IElement e : cell)
+                    if (e != element) builder.add(e);
+                cells[index] = builder.build();
+            }
+        }
+    }
+
+    /**
+     * Update the slots for the element after it moved
+     * @param element the element that changed its position
+     */
+    public void update(IElement element) {
+        remove(element);
+        add(element);
+    }
+
+    /**
+     * @param pos the slot to look up
+     * @return an immutable set with all elements occupying this slot
+     */
+    public Set<IElement> get(SlotPos pos) {
+        long bit = MenuUtil.getSlotBit(pos);
+        if (bit == 0L) return Collections.emptySet();
+        return cell(Long.numberOfTrailingZeros(bit));
+    }
+
+    /**
+     * Remove all elements from this grid
+     */
+    public void clear() {
+        Arrays.fill(cells, null);
+        masks.clear();
+    }
+
+    private Set<IElement> cell(int index) {
+        Set<IElement> cell = cells[index];
+        return cell == null ? Collections.emptySet() : cell;
+    }
+
+}